@@ -0,0 +1,38 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sanitizing of help HTML, done for every distinct help text of models and attributes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HelpifyBenchmark {
+    @Benchmark
+    public String sanitize() {
+        return ToAsciiDoc.sanitize(SyntheticModels.HELP);
+    }
+
+    @Benchmark
+    public String sanitizeShort() {
+        return ToAsciiDoc.sanitize("<p>How many.</p>");
+    }
+
+    /**
+     * Looks up help sanitized earlier, as for all but the first occurrence of a help text in a run.
+     */
+    @Benchmark
+    public String helpify() {
+        return ToAsciiDoc.helpify(SyntheticModels.HELP);
+    }
+}
@@ -0,0 +1,97 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.util.List;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Nested {@code @DataBoundConstructor} classes, like {@link DescribeMe} but deeper, to describe live
+ * {@link org.jenkinsci.plugins.structs.describable.ParameterType}s offline.
+ */
+public class NestedDescribables {
+    public enum Mode {
+        FAST,
+        SLOW,
+        AUTO
+    }
+
+    public static class Holder {
+        public final Root root;
+
+        @DataBoundConstructor
+        public Holder(Root root) {
+            this.root = root;
+        }
+    }
+
+    public static class Root {
+        public final String name;
+        public final Branch branch;
+        public List<Branch> branches;
+        public Mode mode;
+
+        @DataBoundConstructor
+        public Root(String name, Branch branch) {
+            this.name = name;
+            this.branch = branch;
+        }
+
+        @DataBoundSetter
+        public void setBranches(List<Branch> branches) {
+            this.branches = branches;
+        }
+
+        @DataBoundSetter
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+    }
+
+    public static class Branch {
+        public final Leaf leaf;
+        public List<Leaf> leaves;
+        public boolean enabled;
+
+        @DataBoundConstructor
+        public Branch(Leaf leaf) {
+            this.leaf = leaf;
+        }
+
+        @DataBoundSetter
+        public void setLeaves(List<Leaf> leaves) {
+            this.leaves = leaves;
+        }
+
+        @DataBoundSetter
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Leaf {
+        public final String value;
+        public int count;
+        public Mode mode;
+        public List<String> labels;
+
+        @DataBoundConstructor
+        public Leaf(String value) {
+            this.value = value;
+        }
+
+        @DataBoundSetter
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        @DataBoundSetter
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        @DataBoundSetter
+        public void setLabels(List<String> labels) {
+            this.labels = labels;
+        }
+    }
+}
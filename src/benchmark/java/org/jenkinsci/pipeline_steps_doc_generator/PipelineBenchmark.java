@@ -0,0 +1,71 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole run of the generator, from booting the plugins to separating the parameter classes, on synthetic plugins
+ * written by {@link SyntheticPlugins}.
+ * <p>
+ * Each invocation boots the plugins again, so that the time grows with their number as a real run does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class PipelineBenchmark {
+    @Param({"10", "100", "2000"})
+    public int plugins;
+
+    @Param({"3"})
+    public int depth;
+
+    private Path home;
+
+    @Setup(Level.Trial)
+    public void writePlugins() throws IOException {
+        home = Files.createTempDirectory("synthetic");
+        new SyntheticPlugins(5, depth, 4, true, true).write(home, plugins);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePlugins() throws IOException {
+        try (Stream<Path> files = Files.walk(home)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Map<String, List<QuasiDescriptor>>> generate() {
+        PipelineStepExtractor pse = new PipelineStepExtractor();
+        pse.homeDir = home.toString();
+        pse.asciiDest = home.resolve("allAscii").toString();
+        pse.deprecationsCache = home.resolve(SyntheticPlugins.DEPRECATIONS).toString();
+        Map<String, Map<String, List<QuasiDescriptor>>> steps = pse.findSteps();
+        pse.generateAscii(steps, pse.pluginManager);
+        return steps;
+    }
+}
@@ -0,0 +1,113 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Separation of parameter classes by {@link ProcessAsciiDoc} out of a generated corpus of pages.
+ * <p>
+ * One page in ten is the {@code workflow-scm} page of the tests, separated along {@code config.txt};
+ * the others are synthetic pages, from which the implementations of the first nested choice are separated.
+ * Run from the project directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProcessAsciiDocBenchmark {
+    private static final int FANOUT = 8;
+    private static final int LINES_THRESHOLD = 100;
+
+    @Param({"50"})
+    public int pages;
+
+    private Path corpus;
+    private Path allAscii;
+    private List<String> classNames;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws IOException {
+        corpus = Files.createTempDirectory("corpus");
+        String scm = Files.readString(Path.of("src/test/resources/input/workflow-scm.adoc"), StandardCharsets.UTF_8);
+        for (int i = 0; i < pages; i++) {
+            String page;
+            if (i % 10 == 0) {
+                page = scm;
+            } else {
+                page = ToAsciiDoc.generatePluginHelp(
+                        new RenderContext(), SyntheticModels.plugin("synthetic-" + i, 5, 4, FANOUT), true);
+            }
+            Files.writeString(corpus.resolve("page-" + i + ".adoc"), page, StandardCharsets.UTF_8);
+        }
+        classNames = new ArrayList<>(ProcessAsciiDoc.readConfig(Path.of("config.txt")));
+        for (int i = 0; i < FANOUT; i++) {
+            classNames.add(SyntheticModels.symbol(4, i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copyCorpus() throws IOException {
+        allAscii = Files.createTempDirectory("allAscii");
+        Files.createDirectory(allAscii.resolve("params"));
+        try (Stream<Path> files = Files.list(corpus)) {
+            for (Path page : (Iterable<Path>) files::iterator) {
+                Files.copy(page, allAscii.resolve(page.getFileName()));
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteCopy() throws IOException {
+        delete(allAscii);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        delete(corpus);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void processDocs() {
+        new ProcessAsciiDoc().processDocs(allAscii.toString(), LINES_THRESHOLD, classNames);
+    }
+
+    @Benchmark
+    public String separateClass() throws IOException {
+        return new ProcessAsciiDoc()
+                .separateClass(
+                        "$class: 'GitSCM'",
+                        allAscii.toString(),
+                        allAscii.resolve("page-0.adoc").toFile(),
+                        LINES_THRESHOLD);
+    }
+}
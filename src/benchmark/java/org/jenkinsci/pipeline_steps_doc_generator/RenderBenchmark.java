@@ -0,0 +1,89 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.structs.describable.DescribableModel;
+import org.jenkinsci.plugins.structs.describable.ParameterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of nested models by {@link ToAsciiDoc}, from live types and from synthetic snapshots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+    @State(Scope.Benchmark)
+    public static class Live {
+        ParameterType type;
+
+        @Setup
+        public void setUp() {
+            type = new DescribableModel<>(NestedDescribables.Holder.class)
+                    .getParameter("root")
+                    .getType();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"3", "6"})
+        public int depth;
+
+        @Param({"4", "16"})
+        public int fanout;
+
+        ModelSnapshot.Step step;
+        ModelSnapshot.Plugin plugin;
+        FragmentCache fragments;
+
+        @Setup
+        public void setUp() {
+            step = SyntheticModels.step("synthetic", depth, fanout);
+            plugin = SyntheticModels.plugin("synthetic", 10, depth, fanout);
+            fragments = new FragmentCache();
+        }
+    }
+
+    /**
+     * Extracts and describes a live type, nested three levels deep.
+     */
+    @Benchmark
+    public String describeType(Live live) throws Exception {
+        return ToAsciiDoc.describeType(live.type, "");
+    }
+
+    @Benchmark
+    public String generateStepHelp(Synthetic synthetic) {
+        return ToAsciiDoc.generateStepHelp(new RenderContext(), synthetic.step);
+    }
+
+    /**
+     * Renders a step with nested documentation reused from the earlier renderings.
+     */
+    @Benchmark
+    public String generateStepHelpCached(Synthetic synthetic) {
+        return ToAsciiDoc.generateStepHelp(new RenderContext(synthetic.fragments), synthetic.step);
+    }
+
+    /**
+     * Streams a page of ten steps, as written to the files.
+     */
+    @Benchmark
+    public void writePluginHelp(Synthetic synthetic) throws IOException {
+        ToAsciiDoc.writePluginHelp(new RenderContext(), synthetic.plugin, true, Writer.nullWriter());
+    }
+}
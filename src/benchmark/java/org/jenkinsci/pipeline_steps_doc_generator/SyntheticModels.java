@@ -0,0 +1,101 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+
+/**
+ * Synthetic models shaped like those of the largest plugin pages, built without loading any plugin.
+ * <p>
+ * A model of depth {@code n} has a few attributes, an enum, a nested object of depth {@code n - 1} and a nested
+ * choice between {@code fanout} implementations, each with attributes of its own.
+ */
+final class SyntheticModels {
+    /** Realistic help of a model or attribute, with the markup found in plugins. */
+    static final String HELP = load("help.html");
+
+    private SyntheticModels() {}
+
+    private static String load(String name) {
+        try (InputStream in = SyntheticModels.class.getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static ModelSnapshot.Model model(int depth, int fanout) {
+        ModelSnapshot.Model model = new ModelSnapshot.Model("org.example.Level" + depth);
+        model.help = Outcome.value(HELP);
+        List<ModelSnapshot.Param> params = attributes();
+        params.add(param("mode", new ModelSnapshot.EnumValues(List.of("FAST", "SLOW", "AUTO"))));
+        if (depth > 1) {
+            params.add(param("options", new ModelSnapshot.NestedObject(model(depth - 1, fanout))));
+            List<ModelSnapshot.Choice> choices = new ArrayList<>();
+            for (int i = 0; i < fanout; i++) {
+                ModelSnapshot.Model implementation = new ModelSnapshot.Model(implementation(depth, i));
+                implementation.help = Outcome.value(HELP);
+                implementation.params = attributes();
+                choices.add(new ModelSnapshot.Choice(Outcome.value(symbol(depth, i)), implementation));
+            }
+            params.add(param(
+                    "implementation",
+                    new ModelSnapshot.NestedChoice("org.example.Base" + depth, Outcome.value(choices))));
+        }
+        model.params = params;
+        return model;
+    }
+
+    private static String implementation(int depth, int i) {
+        return "org.example.Level" + depth + "Impl" + i;
+    }
+
+    /**
+     * Symbol of an implementation in a nested choice, which {@link ProcessAsciiDoc} can separate.
+     */
+    static String symbol(int depth, int i) {
+        return "$class: 'Level" + depth + "Impl" + i + "'";
+    }
+
+    private static List<ModelSnapshot.Param> attributes() {
+        List<ModelSnapshot.Param> params = new ArrayList<>();
+        params.add(new ModelSnapshot.Param("name", true, " : String", Outcome.value(HELP), null));
+        params.add(new ModelSnapshot.Param("count", false, " : int", Outcome.value("<p>How many.</p>"), null));
+        params.add(new ModelSnapshot.Param(
+                "labels",
+                false,
+                " : " + ToAsciiDoc.ARRAY_LIST_OF + "String",
+                Outcome.value(null),
+                Outcome.value(new ModelSnapshot.ArrayOf(new ModelSnapshot.Atomic()))));
+        return params;
+    }
+
+    private static ModelSnapshot.Param param(String name, ModelSnapshot.Type type) {
+        return new ModelSnapshot.Param(name, false, "", Outcome.value(HELP), Outcome.value(type));
+    }
+
+    static ModelSnapshot.Step step(String symbol, int depth, int fanout) {
+        return new ModelSnapshot.Step(
+                "org.example." + symbol,
+                List.of("org.example.Descriptor"),
+                false,
+                Outcome.value(symbol),
+                "Synthetic step " + symbol,
+                Outcome.value(false),
+                null,
+                Outcome.value(HELP),
+                Outcome.value(model(depth, fanout)));
+    }
+
+    static ModelSnapshot.Plugin plugin(String name, int steps, int depth, int fanout) {
+        List<ModelSnapshot.Step> list = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            list.add(step("step" + i, depth, fanout));
+        }
+        return new ModelSnapshot.Plugin(name, name, false, List.of(new ModelSnapshot.Section("Steps", list)));
+    }
+}
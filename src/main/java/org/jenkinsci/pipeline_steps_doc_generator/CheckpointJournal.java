@@ -0,0 +1,201 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Pages written by a run, one JSON line each as soon as it is written, so that a run killed halfway, by an out of
+ * memory error for instance, can be resumed without writing again the pages it completed.
+ * <p>
+ * Each line records the kind and name of a page, with the hash of its file: a plugin page when rendered, a page
+ * rewritten by {@link ProcessAsciiDoc} with the separate pages it wrote, or a Declarative directive page. A page is
+ * complete if its file still has the recorded hash. The parameter classes selected for separation are recorded
+ * too, so that a resumed run separates the same ones. A line cut short by the end of the run is ignored.
+ * <p>
+ * The first line fingerprints the generator and the plugin archives: a journal left by another generator, or for
+ * other plugins, is started over.
+ */
+final class CheckpointJournal implements Closeable {
+    private static final Logger LOG = Logger.getLogger(CheckpointJournal.class.getName());
+
+    private static final int VERSION = 1;
+
+    static final String PLUGIN = "plugin";
+    static final String PROCESSED = "processed";
+    static final String DIRECTIVE = "directive";
+    static final String SEPARATED = "separated";
+
+    private final Path file;
+    private final Map<String, JSONObject> completed = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    private CheckpointJournal(Path file, BufferedWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the journal of a run.
+     *
+     * @param fingerprint fingerprint of the inputs of the run, see {@link #fingerprint(String, File)}
+     * @param resume whether to keep what the previous run with the same fingerprint recorded, or start over
+     */
+    static CheckpointJournal open(Path file, String fingerprint, boolean resume) throws IOException {
+        Map<String, JSONObject> previous = new HashMap<>();
+        if (resume && Files.isRegularFile(file)) {
+            boolean matching = false;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                JSONObject json;
+                try {
+                    json = new JSONObject(line);
+                } catch (JSONException ex) {
+                    continue; // cut short
+                }
+                if (json.has("fingerprint")) {
+                    matching = json.optInt("version") == VERSION && fingerprint.equals(json.getString("fingerprint"));
+                    if (!matching) {
+                        LOG.info("The generator or the plugins changed since " + file + " was written, starting over");
+                        break;
+                    }
+                } else if (matching && json.has("kind")) {
+                    previous.put(key(json.getString("kind"), json.getString("name")), json);
+                }
+            }
+            if (!matching) {
+                previous.clear();
+            }
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        BufferedWriter writer = Files.newBufferedWriter(
+                file,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        CheckpointJournal journal = new CheckpointJournal(file, writer);
+        journal.append(new JSONObject().put("version", VERSION).put("fingerprint", fingerprint));
+        // what is still complete is recorded again, so that the journal stays valid if this run is killed too
+        for (JSONObject entry : previous.values()) {
+            journal.completed.put(key(entry.getString("kind"), entry.getString("name")), entry);
+            journal.append(entry);
+        }
+        if (!previous.isEmpty()) {
+            LOG.info("Resuming from " + previous.size() + " pages recorded in " + file);
+        }
+        return journal;
+    }
+
+    /**
+     * Fingerprints the inputs of a run: the generator, and the names, sizes and dates of the plugin archives.
+     *
+     * @param generator fingerprint of the generator, see {@link RegenerationManifest#fingerprint}
+     * @param pluginsDir directory holding the {@code .hpi} or {@code .jpi} archives, if any
+     */
+    static String fingerprint(String generator, File pluginsDir) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+        digest.update(generator.getBytes(StandardCharsets.UTF_8));
+        File[] archives = pluginsDir.listFiles((dir, name) -> name.endsWith(".hpi") || name.endsWith(".jpi"));
+        if (archives != null) {
+            Arrays.sort(archives);
+            for (File archive : archives) {
+                String entry = archive.getName() + ":" + archive.length() + ":" + archive.lastModified() + "\n";
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Checks whether a page was completed, that is recorded with the hash its file still has.
+     *
+     * @return what was recorded along with the page, or {@code null} if it has to be written again
+     */
+    @CheckForNull
+    JSONObject completed(String kind, String name, Path page) {
+        JSONObject entry = completed.get(key(kind, name));
+        if (entry == null || !Files.isRegularFile(page)) {
+            return null;
+        }
+        try {
+            return entry.getString("sha256").equals(RegenerationManifest.hash(page)) ? entry : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return what was recorded along with a page, whether it is still complete or not
+     */
+    @CheckForNull
+    JSONObject get(String kind, String name) {
+        return completed.get(key(kind, name));
+    }
+
+    /**
+     * Records a decision of the run, which a resumed run has to follow, such as the classes it separates.
+     */
+    void record(String kind, String name, JSONObject details) throws IOException {
+        JSONObject entry = details.put("kind", kind).put("name", name);
+        completed.put(key(kind, name), entry);
+        append(entry);
+    }
+
+    /**
+     * Records a page just written.
+     *
+     * @param details recorded along with the page, returned by {@link #completed(String, String, Path)}, completed
+     *     by the kind, name and hash of the page
+     */
+    void record(String kind, String name, Path page, JSONObject details) throws IOException {
+        JSONObject entry =
+                details.put("kind", kind).put("name", name).put("sha256", RegenerationManifest.hash(page));
+        completed.put(key(kind, name), entry);
+        append(entry);
+    }
+
+    /**
+     * Appends a line, handed over to the operating system at once so that it survives the end of the JVM.
+     */
+    private synchronized void append(JSONObject entry) throws IOException {
+        writer.write(entry.toString());
+        writer.newLine();
+        writer.flush();
+    }
+
+    private static String key(String kind, String name) {
+        return kind + ":" + name;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import hudson.PluginManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jenkinsci.infra.tools.HyperLocalPluginManager;
+
+/**
+ * Components of the loaded plugins, shared by the steps and the Declarative directives of a run, so that the plugins
+ * are scanned once per component type, and the plugin of every class is mapped once.
+ */
+final class ComponentRegistry {
+    private final PluginManager pluginManager;
+    private final ConcurrentMap<Class<?>, List<?>> components = new ConcurrentHashMap<>();
+    private volatile Map<String, String> classesToPlugin;
+
+    ComponentRegistry(PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+
+    boolean isOf(PluginManager pluginManager) {
+        return this.pluginManager == pluginManager;
+    }
+
+    /**
+     * @return the components of a type, as found by {@link hudson.PluginStrategy#findComponents(Class)}
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> find(Class<T> type) {
+        return (List<T>) components.computeIfAbsent(type, t -> Collections.unmodifiableList(
+                new ArrayList<>(pluginManager.getPluginStrategy().findComponents(type))));
+    }
+
+    /**
+     * @return the short names of the plugins by class name, empty unless the plugins were loaded by a
+     *     {@link HyperLocalPluginManager}
+     */
+    Map<String, String> getClassesToPlugin() {
+        Map<String, String> map = classesToPlugin;
+        if (map == null) {
+            map = pluginManager instanceof HyperLocalPluginManager hyperLocal
+                    ? hyperLocal.uberPlusClassLoader.getByPlugin()
+                    : Map.of();
+            classesToPlugin = map;
+        }
+        return map;
+    }
+}
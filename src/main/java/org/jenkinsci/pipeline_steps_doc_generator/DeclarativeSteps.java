@@ -10,14 +10,19 @@ import hudson.model.JobPropertyDescriptor;
 import hudson.model.ParameterDefinition;
 import hudson.triggers.TriggerDescriptor;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,6 +32,7 @@ import org.jenkinsci.plugins.pipeline.modeldefinition.options.DeclarativeOptionD
 import org.jenkinsci.plugins.pipeline.modeldefinition.when.DeclarativeStageConditionalDescriptor;
 import org.jenkinsci.plugins.structs.SymbolLookup;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.json.JSONObject;
 
 public class DeclarativeSteps {
     private static final Logger LOG = Logger.getLogger(DeclarativeSteps.class.getName());
@@ -36,37 +42,154 @@ public class DeclarativeSteps {
             Arrays.asList(Launcher.class, FilePath.class, Computer.class);
 
     public void generateDeclarativeAscii(String declarativeDest, HyperLocalPluginManager pluginManager) {
-        File declDest;
-        if (declarativeDest != null) {
-            declDest = new File(declarativeDest);
-        } else {
-            declDest = new File("declarative");
-        }
-        declDest.mkdirs();
-        String declPath = declDest.getAbsolutePath();
+        generateDeclarativeAscii(declarativeDest, pluginManager, new FragmentCache());
+    }
+
+    public void generateDeclarativeAscii(
+            String declarativeDest, HyperLocalPluginManager pluginManager, FragmentCache fragments) {
+        generateDeclarativeAscii(declarativeDest, extractDirectives(new ModelExtractor(), pluginManager), fragments);
+    }
 
+    /**
+     * Extracts the pages of the Declarative directives from the loaded plugins.
+     */
+    public List<ModelSnapshot.Directive> extractDirectives(
+            ModelExtractor extractor, HyperLocalPluginManager pluginManager) {
+        return extractDirectives(extractor, new ComponentRegistry(pluginManager));
+    }
+
+    /**
+     * Extracts the pages of the Declarative directives from the components of the loaded plugins.
+     */
+    List<ModelSnapshot.Directive> extractDirectives(ModelExtractor extractor, ComponentRegistry registry) {
         Map<Class<? extends Descriptor>, Predicate<Descriptor>> filters = getDeclarativeFilters();
+        List<ModelSnapshot.Directive> directives = new ArrayList<>();
 
         for (Map.Entry<String, List<Class<? extends Descriptor>>> entry :
                 getDeclarativeDirectives().entrySet()) {
-            LOG.info("Generating docs for directive " + entry.getKey());
-            Map<String, List<Descriptor>> pluginDescMap = new HashMap<>();
+            LOG.info("Extracting directive " + entry.getKey());
+            try (RunMetrics.Timer timer = extractor.getMetrics().directive(entry.getKey())) {
+                Map<String, List<Descriptor>> pluginDescMap = new HashMap<>();
 
-            for (Class<? extends Descriptor> d : entry.getValue()) {
-                Predicate<Descriptor> filter = filters.get(d);
-                LOG.info(" - Loading descriptors of type " + d.getSimpleName() + " with filter: " + (filter != null));
-                pluginDescMap = processDescriptors(d, pluginDescMap, filter, pluginManager);
+                for (Class<? extends Descriptor> d : entry.getValue()) {
+                    Predicate<Descriptor> filter = filters.get(d);
+                    LOG.info(" - Loading descriptors of type " + d.getSimpleName() + " with filter: "
+                            + (filter != null));
+                    pluginDescMap = processDescriptors(d, pluginDescMap, filter, registry);
+                }
+                directives.add(extractor.directive(entry.getKey(), pluginDescMap));
             }
+        }
+        return directives;
+    }
 
-            String whole9yards = ToAsciiDoc.generateDirectiveHelp(entry.getKey(), pluginDescMap, true);
+    /**
+     * Renders the pages of the Declarative directives.
+     */
+    public void generateDeclarativeAscii(
+            String declarativeDest, List<ModelSnapshot.Directive> directives, FragmentCache fragments) {
+        generateDeclarativeAscii(declarativeDest, directives, fragments, new RunMetrics(), 1, null, null);
+    }
+
+    /**
+     * @param metrics records the time spent on each directive, and the size of its page
+     * @param threads the number of directives rendered concurrently
+     * @param archive receives the pages instead of the {@code declarativeDest} folder, if any
+     * @param journal records the pages written to the folder, and those the run resumed completed
+     */
+    void generateDeclarativeAscii(
+            String declarativeDest,
+            List<ModelSnapshot.Directive> directives,
+            FragmentCache fragments,
+            RunMetrics metrics,
+            int threads,
+            @CheckForNull PageArchive archive,
+            @CheckForNull CheckpointJournal journal) {
+        String declPath = archive == null ? declarativeFolder(declarativeDest) : null;
+        PageChanges changes = null;
+        if (declPath != null) {
+            try {
+                changes = PageChanges.scan(Path.of(declPath));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not read the pages of " + declPath + ", not reporting which change", ex);
+            }
+        }
 
+        if (threads > 1 && directives.size() > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, directives.size()));
             try {
-                Files.writeString(
-                        new File(declPath, entry.getKey() + ".adoc").toPath(), whole9yards, StandardCharsets.UTF_8);
-            } catch (Exception ex) {
-                LOG.log(Level.SEVERE, "Error generating directive file for " + entry.getKey() + ".  Skip.", ex);
-                // continue to next directive
+                List<Future<?>> futures = new ArrayList<>();
+                for (ModelSnapshot.Directive directive : directives) {
+                    futures.add(executor.submit(
+                            () -> generateDirectiveAscii(declPath, archive, journal, directive, fragments, metrics)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering directives", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Rendering directives failed", ex.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (ModelSnapshot.Directive directive : directives) {
+                generateDirectiveAscii(declPath, archive, journal, directive, fragments, metrics);
+            }
+        }
+        if (changes != null) {
+            try {
+                JSONObject report = changes.finish();
+                metrics.pages(new File(declPath).getName(), report);
+                LOG.info(new File(declPath).getName() + ": " + PageChanges.summary(report));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not compare the pages of " + declPath + " to the previous ones", ex);
+            }
+        }
+    }
+
+    private static String declarativeFolder(@CheckForNull String declarativeDest) {
+        File declDest;
+        if (declarativeDest != null) {
+            declDest = new File(declarativeDest);
+        } else {
+            declDest = new File("declarative");
+        }
+        declDest.mkdirs();
+        return declDest.getAbsolutePath();
+    }
+
+    private static void generateDirectiveAscii(
+            @CheckForNull String declPath,
+            @CheckForNull PageArchive archive,
+            @CheckForNull CheckpointJournal journal,
+            ModelSnapshot.Directive directive,
+            FragmentCache fragments,
+            RunMetrics metrics) {
+        String name = directive.name() + ".adoc";
+        Path page = archive == null ? new File(declPath, name).toPath() : null;
+        if (journal != null && page != null && journal.completed(CheckpointJournal.DIRECTIVE, name, page) != null) {
+            LOG.info("Resuming after directive " + directive.name());
+            return;
+        }
+        LOG.info("Generating docs for directive " + directive.name());
+        try (RunMetrics.Timer timer = metrics.directive(directive.name())) {
+            PageChanges.Content content =
+                    writer -> ToAsciiDoc.writeDirectiveHelp(new RenderContext(fragments), directive, true, writer);
+            if (archive != null) {
+                timer.output(archive.put(name, content));
+            } else {
+                PageChanges.write(page, content);
+                timer.output(Files.size(page));
+                if (journal != null) {
+                    journal.record(CheckpointJournal.DIRECTIVE, name, page, new JSONObject());
+                }
             }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Error generating directive file for " + directive.name() + ".  Skip.", ex);
+            // continue to next directive
         }
     }
 
@@ -74,14 +197,13 @@ public class DeclarativeSteps {
             @NonNull Class<? extends Descriptor> c,
             @NonNull Map<String, List<Descriptor>> descMap,
             @CheckForNull Predicate<Descriptor> filter,
-            HyperLocalPluginManager pluginManager) {
+            ComponentRegistry registry) {
         // If no filter was specified, default to true.
         if (filter == null) {
             filter = (d) -> true;
         }
-        List<? extends Descriptor> descriptors =
-                pluginManager.getPluginStrategy().findComponents(c);
-        final Map<String, String> descriptorsToPlugin = pluginManager.uberPlusClassLoader.getByPlugin();
+        List<? extends Descriptor> descriptors = registry.find(c);
+        final Map<String, String> descriptorsToPlugin = registry.getClassesToPlugin();
 
         // Only include steps or describables with symbols.
         Predicate<Descriptor> fullFilter = filter.and(d -> {
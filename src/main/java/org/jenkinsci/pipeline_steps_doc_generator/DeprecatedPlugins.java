@@ -0,0 +1,174 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Ids of the plugins flagged as deprecated by the update center.
+ */
+class DeprecatedPlugins {
+    private static final Logger LOG = Logger.getLogger(DeprecatedPlugins.class.getName());
+
+    static final String UPDATE_CENTER = "https://updates.jenkins.io/current/update-center.actual.json";
+    private static final int CONNECT_TIMEOUT = 10_000;
+    private static final int READ_TIMEOUT = 60_000;
+
+    private DeprecatedPlugins() {}
+
+    /**
+     * Starts loading the deprecated plugins in the background.
+     *
+     * @see #load(String, Path, Duration)
+     */
+    static CompletableFuture<Set<String>> loadAsync(String updateCenter, @CheckForNull Path cache, Duration maxAge) {
+        return CompletableFuture.supplyAsync(() -> load(updateCenter, cache, maxAge), runnable -> {
+            Thread thread = new Thread(runnable, "Loading deprecated plugins");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Loads the deprecated plugins from the cache when it is younger than its maximum age, or else from the update
+     * center, in which case the cache is written for the next run. An older cache is still read if the update center
+     * cannot be. Returns no plugins if neither can be read.
+     *
+     * @param updateCenter URL or path of the update center JSON
+     * @param cache file listing the ids of deprecated plugins, one per line
+     * @param maxAge age of the cache after which it is refreshed from the update center
+     */
+    static Set<String> load(String updateCenter, @CheckForNull Path cache, Duration maxAge) {
+        boolean cached = cache != null && Files.isRegularFile(cache);
+        try {
+            if (cached && !isOlder(cache, maxAge)) {
+                return readCache(cache);
+            }
+            Set<String> plugins;
+            try (Reader reader =
+                    new BufferedReader(new InputStreamReader(open(updateCenter), StandardCharsets.UTF_8))) {
+                plugins = parse(reader);
+            }
+            LOG.info("Read " + plugins.size() + " deprecated plugins from " + updateCenter);
+            if (cache != null) {
+                Files.write(cache, plugins, StandardCharsets.UTF_8);
+            }
+            return plugins;
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Update center could not be read: " + ex);
+        }
+        if (cached) {
+            try {
+                LOG.warning("Reading the deprecated plugins from " + cache + ", older than " + maxAge);
+                return readCache(cache);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Cache could not be read: " + ex);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    private static boolean isOlder(Path cache, Duration maxAge) throws IOException {
+        Instant modified = Files.getLastModifiedTime(cache).toInstant();
+        return modified.plus(maxAge).isBefore(Instant.now());
+    }
+
+    private static Set<String> readCache(Path cache) throws IOException {
+        Set<String> plugins = new TreeSet<>(Files.readAllLines(cache, StandardCharsets.UTF_8));
+        plugins.remove("");
+        LOG.info("Read " + plugins.size() + " deprecated plugins from " + cache);
+        return plugins;
+    }
+
+    @SuppressFBWarnings(value = "URLCONNECTION_SSRF_FD", justification = "URL comes from the command line")
+    private static InputStream open(String updateCenter) throws IOException {
+        if (!updateCenter.contains("://")) {
+            return Files.newInputStream(Path.of(updateCenter));
+        }
+        URLConnection connection = new URL(updateCenter).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Reads the keys of the top level {@code deprecations} object of an update center JSON.
+     * The rest of the document is skipped as it is read, without being held in memory.
+     */
+    static Set<String> parse(Reader reader) {
+        JSONTokener tokener = new JSONTokener(reader);
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("The update center must be a JSON object");
+        }
+        Set<String> plugins = new TreeSet<>();
+        char c = tokener.nextClean();
+        while (c != '}') {
+            if (c != '"') {
+                throw tokener.syntaxError("Expected a key");
+            }
+            String key = tokener.nextString('"');
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected ':' after " + key);
+            }
+            if (key.equals("deprecations")) {
+                Object deprecations = tokener.nextValue();
+                if (deprecations instanceof JSONObject object) {
+                    plugins.addAll(object.keySet());
+                }
+            } else {
+                skipValue(tokener);
+            }
+            c = tokener.nextClean();
+            if (c == ',') {
+                c = tokener.nextClean();
+            } else if (c != '}') {
+                throw tokener.syntaxError("Expected ',' or '}' after " + key);
+            }
+        }
+        return plugins;
+    }
+
+    private static void skipValue(JSONTokener tokener) {
+        char c = tokener.nextClean();
+        if (c == '"') {
+            tokener.nextString('"');
+        } else if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = tokener.next();
+                switch (c) {
+                    case 0 -> throw tokener.syntaxError("Unterminated value");
+                    case '"' -> tokener.nextString('"');
+                    case '{', '[' -> depth++;
+                    case '}', ']' -> depth--;
+                    default -> {}
+                }
+            }
+        } else {
+            // number, true, false or null
+            while (c != 0 && c != ',' && c != '}' && c != ']') {
+                c = tokener.next();
+            }
+            tokener.back();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the pages of the plugins and Declarative directives on a local HTTP endpoint, rendered on request from the
+ * plugins loaded once, or from a model file, so that trying changes does not pay for booting the plugins each time.
+ * <p>
+ * Rendered pages are cached until a plugin they document is reported changed. Requests are handled one at a time:
+ * <ul>
+ * <li>{@code GET /plugins} and {@code GET /directives} list the pages, one name per line.</li>
+ * <li>{@code GET /plugin/NAME} and {@code GET /directive/NAME} return the AsciiDoc of a page, before the separation of
+ * the repeated parameter classes.</li>
+ * <li>{@code POST /changed/NAME} drops the cached pages documenting the plugin, after reading its pages again if the
+ * source can.</li>
+ * <li>{@code POST /generate} writes all pages, as a run without {@code -serve} does.</li>
+ * <li>{@code POST /stop} stops serving.</li>
+ * </ul>
+ * Requests naming another host than the loopback one, as a page of another site does after rebinding its name, and
+ * {@code POST} requests sent by a browser on behalf of a page, which carry its {@code Origin}, are refused.
+ */
+final class DocServer {
+    private static final Logger LOG = Logger.getLogger(DocServer.class.getName());
+
+    /**
+     * Where the pages come from.
+     */
+    interface Source {
+        Collection<String> plugins();
+
+        /**
+         * @return the page of a plugin, or {@code null} if it documents no step
+         */
+        @CheckForNull
+        ModelSnapshot.Plugin plugin(String name);
+
+        List<ModelSnapshot.Directive> directives();
+
+        /**
+         * Reads the pages of a plugin reported changed again, if the source can.
+         */
+        void changed(String plugin) throws IOException;
+
+        /**
+         * Writes all pages to their destination.
+         */
+        void generate();
+    }
+
+    private record Page(String text, Set<String> documented) {}
+
+    private final Source source;
+    private final Map<String, String> classesToPlugin;
+    private final Map<String, Page> pages = new HashMap<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private FragmentCache fragments = new FragmentCache();
+
+    /**
+     * @param classesToPlugin plugins of the classes documented, empty if unknown, in which case any change drops all
+     *     the pages
+     */
+    DocServer(Source source, Map<String, String> classesToPlugin) {
+        this.source = source;
+        this.classesToPlugin = classesToPlugin;
+    }
+
+    /**
+     * @return the page of a plugin, or {@code null} if there is none
+     */
+    @CheckForNull
+    synchronized String plugin(String name) {
+        Page page = pages.get("plugin:" + name);
+        if (page == null) {
+            ModelSnapshot.Plugin plugin = source.plugin(name);
+            if (plugin == null) {
+                return null;
+            }
+            RenderContext context = new RenderContext(fragments);
+            String text = ToAsciiDoc.generatePluginHelp(context, plugin, true);
+            Set<String> documented = new TreeSet<>(PipelineStepExtractor.inputsOf(context, plugin, classesToPlugin));
+            documented.add(name);
+            page = new Page(text, documented);
+            pages.put("plugin:" + name, page);
+        }
+        return page.text();
+    }
+
+    /**
+     * @return the page of a Declarative directive, or {@code null} if there is none
+     */
+    @CheckForNull
+    synchronized String directive(String name) {
+        Page page = pages.get("directive:" + name);
+        if (page == null) {
+            ModelSnapshot.Directive directive = source.directives().stream()
+                    .filter(d -> d.name().equals(name))
+                    .findFirst()
+                    .orElse(null);
+            if (directive == null) {
+                return null;
+            }
+            RenderContext context = new RenderContext(fragments);
+            String text = ToAsciiDoc.generateDirectiveHelp(context, directive, true);
+            Set<String> documented =
+                    new TreeSet<>(PipelineStepExtractor.pluginsOf(context.getRendered(), classesToPlugin));
+            for (ModelSnapshot.Section section : directive.sections()) {
+                documented.add(section.name());
+            }
+            page = new Page(text, documented);
+            pages.put("directive:" + name, page);
+        }
+        return page.text();
+    }
+
+    /**
+     * Drops the cached pages documenting a plugin, and the nested documentation shared by the pages.
+     *
+     * @return the number of pages dropped
+     */
+    synchronized int changed(String plugin) throws IOException {
+        source.changed(plugin);
+        fragments = new FragmentCache();
+        int dropped = 0;
+        for (Iterator<Page> it = pages.values().iterator(); it.hasNext(); ) {
+            Page page = it.next();
+            if (classesToPlugin.isEmpty() || page.documented().contains(plugin)) {
+                it.remove();
+                dropped++;
+            }
+        }
+        LOG.info(plugin + " changed, dropped " + dropped + " pages");
+        return dropped;
+    }
+
+    /**
+     * Starts serving on a port of the loopback interface.
+     *
+     * @param port the port, {@code 0} for any free port
+     * @return the server started, whose address gives the port
+     */
+    HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        LOG.info("Serving the pages on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/");
+        return server;
+    }
+
+    /**
+     * Waits until a request stops serving.
+     */
+    void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            int slash = path.indexOf('/', 1);
+            String action = slash < 0 ? path.substring(1) : path.substring(1, slash);
+            String name = slash < 0 ? null : URLDecoder.decode(path.substring(slash + 1), StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            String response = null;
+            boolean post = "POST".equals(method);
+            String refused = refused(exchange, post);
+            if (refused != null) {
+                LOG.warning("Refused " + method + " " + path + ": " + refused);
+                send(exchange, 403, "Refused: " + refused + "\n");
+                return;
+            }
+            try {
+                if (!post && name == null && action.equals("plugins")) {
+                    response = String.join("\n", new TreeSet<>(source.plugins())) + "\n";
+                } else if (!post && name == null && action.equals("directives")) {
+                    List<String> directives = source.directives().stream()
+                            .map(ModelSnapshot.Directive::name)
+                            .toList();
+                    response = String.join("\n", directives) + "\n";
+                } else if (!post && name != null && action.equals("plugin")) {
+                    response = plugin(name);
+                } else if (!post && name != null && action.equals("directive")) {
+                    response = directive(name);
+                } else if (post && name != null && action.equals("changed")) {
+                    response = "Dropped " + changed(name) + " pages\n";
+                } else if (post && name == null && action.equals("generate")) {
+                    synchronized (this) {
+                        source.generate();
+                    }
+                    response = "Generated all pages in " + millisSince(start) + " ms\n";
+                } else if (post && name == null && action.equals("stop")) {
+                    response = "Stopping\n";
+                    stopped.countDown();
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOG.log(Level.WARNING, method + " " + path + " failed", ex);
+                send(exchange, 500, ex + "\n");
+                return;
+            }
+            if (response == null) {
+                send(exchange, 404, "No such page or action: " + method + " " + path + "\n");
+            } else {
+                send(exchange, 200, response);
+                LOG.fine(method + " " + path + " in " + millisSince(start) + " ms");
+            }
+        }
+    }
+
+    /**
+     * @return why a request is refused, or {@code null} if it comes from this machine
+     */
+    @CheckForNull
+    private static String refused(HttpExchange exchange, boolean post) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        int port = exchange.getLocalAddress().getPort();
+        if (host == null
+                || !Set.of("localhost:" + port, "127.0.0.1:" + port, "[::1]:" + port)
+                        .contains(host.toLowerCase(Locale.ROOT))) {
+            return "not addressed to localhost:" + port;
+        }
+        if (post && exchange.getRequestHeaders().containsKey("Origin")) {
+            return "sent by a web page";
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,78 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Failures met while extracting and rendering the documentation, keyed by what failed and how, since the same
+ * classes fail the same way every time a page documents them.
+ * <p>
+ * Each failure is logged the first time it is met, with its stack trace, and only counted afterwards. The counts are
+ * summarized at the end of the run. Failures replayed from a model saved by another run have no stack trace, only
+ * the text of what was thrown. It is safe for concurrent use.
+ */
+public class FailureLog {
+    private static final Logger LOG = Logger.getLogger(FailureLog.class.getName());
+    private static final int MOST_FREQUENT = 10;
+
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Records a failure, logged if it was not met before.
+     *
+     * @param what what failed, such as the description of a class
+     */
+    void failed(Level level, String what, Throwable failure) {
+        String key = what + ", encountered " + failure;
+        LongAdder count = failures.get(key);
+        if (count == null) {
+            LongAdder first = new LongAdder();
+            count = failures.putIfAbsent(key, first);
+            if (count == null) {
+                count = first;
+                LOG.log(level, what + ", encountered ", failure);
+            }
+        }
+        count.increment();
+    }
+
+    /**
+     * @return the number of distinct failures
+     */
+    public int size() {
+        return failures.size();
+    }
+
+    /**
+     * @return the number of times failures were met
+     */
+    public long getOccurrences() {
+        return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public String toString() {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : failures.entrySet()) {
+            counts.add(Map.entry(entry.getKey(), entry.getValue().sum()));
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        StringJoiner summary = new StringJoiner(
+                "\n  ",
+                "failures: " + counts.size() + " distinct, met " + getOccurrences() + " times, most frequent:\n  ",
+                "");
+        summary.setEmptyValue("failures: none");
+        for (Map.Entry<String, Long> count : counts.subList(0, Math.min(MOST_FREQUENT, counts.size()))) {
+            summary.add(count.getValue() + " x " + count.getKey());
+        }
+        return summary.toString();
+    }
+}
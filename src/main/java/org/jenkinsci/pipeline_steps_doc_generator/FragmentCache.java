@@ -0,0 +1,92 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.jenkinsci.plugins.structs.describable.DescribableModel;
+
+/**
+ * Documentation of nested {@link DescribableModel}s rendered by {@link ToAsciiDoc}, shared by all the
+ * renderings of a run and keyed by model type name and indent mode.
+ * <p>
+ * The documentation of a type depends on the enclosing types, since the search is cut when a type is
+ * reached again. Each fragment therefore records the enclosing types which cut its rendering and the
+ * types it entered, and is only reused by a {@link RenderContext} where the former are still enclosing
+ * and none of the latter are.
+ */
+public class FragmentCache {
+    private static final int MAX_VARIANTS = 8;
+
+    private final ConcurrentMap<Key, List<Fragment>> fragments = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Key(String type, boolean indent) {}
+
+    /**
+     * Rendered documentation of a type, with the conditions under which it can be reused.
+     */
+    static final class Fragment {
+        final String text;
+        /** Enclosing types at which the rendering was cut. */
+        final Set<String> cutBy;
+        /** Types entered by the rendering, excluding the type itself. */
+        final Set<String> entered;
+        /** Base types of the nested choices listed by the rendering. */
+        final Set<String> choices;
+
+        Fragment(String text, Set<String> cutBy, Set<String> entered, Set<String> choices) {
+            this.text = text;
+            this.cutBy = Set.copyOf(cutBy);
+            this.entered = Set.copyOf(entered);
+            this.choices = Set.copyOf(choices);
+        }
+    }
+
+    Fragment lookup(String type, boolean indent, Predicate<Fragment> applicable) {
+        List<Fragment> variants = fragments.get(new Key(type, indent));
+        if (variants != null) {
+            for (Fragment fragment : variants) {
+                if (applicable.test(fragment)) {
+                    hits.increment();
+                    return fragment;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    void store(String type, boolean indent, Fragment fragment) {
+        fragments.compute(new Key(type, indent), (key, variants) -> {
+            if (variants == null) {
+                return List.of(fragment);
+            }
+            if (variants.size() >= MAX_VARIANTS
+                    || variants.stream()
+                            .anyMatch(v -> v.cutBy.equals(fragment.cutBy) && v.entered.equals(fragment.entered))) {
+                return variants;
+            }
+            List<Fragment> updated = new ArrayList<>(variants);
+            updated.add(fragment);
+            return List.copyOf(updated);
+        });
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "fragment cache: " + getHits() + " hits, " + getMisses() + " misses, " + fragments.size() + " types";
+    }
+}
@@ -0,0 +1,87 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Help texts as sanitized by {@link ToAsciiDoc}, keyed by their content, since the same help of credentials,
+ * SCMs or common options shows up thousands of times in a run.
+ * <p>
+ * The cache is bounded by the bytes taken by the characters of the texts it holds, two per character, least recently
+ * used texts being evicted first.
+ * It is safe for concurrent use; a text sanitized by two threads at once is simply sanitized twice.
+ */
+public class HelpCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> sanitized = new LinkedHashMap<>(1024, 0.75f, true);
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes bytes of help texts and their sanitized forms to hold at most
+     */
+    public HelpCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the sanitized form of a help text, sanitizing it when missing.
+     */
+    String get(String help, UnaryOperator<String> sanitize) {
+        synchronized (sanitized) {
+            String cached = sanitized.get(help);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        String result = sanitize.apply(help);
+        long size = sizeOf(help, result);
+        if (size <= maxBytes) {
+            synchronized (sanitized) {
+                if (sanitized.put(help, result) == null) { // else sanitized the same by another thread
+                    bytes += size;
+                }
+                Iterator<Map.Entry<String, String>> eldest = sanitized.entrySet().iterator();
+                while (bytes > maxBytes) {
+                    Map.Entry<String, String> entry = eldest.next();
+                    bytes -= sizeOf(entry.getKey(), entry.getValue());
+                    eldest.remove();
+                    evictions.increment();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long sizeOf(String help, String sanitized) {
+        return 2L * (help.length() + sanitized.length());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        int entries;
+        synchronized (sanitized) {
+            entries = sanitized.size();
+        }
+        return "help cache: " + hits + " hits, " + getMisses() + " misses ("
+                + (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate), " + entries + " texts, "
+                + evictions.sum() + " evicted";
+    }
+}
@@ -0,0 +1,134 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.kohsuke.stapler.lang.Klass;
+
+/**
+ * Help resources of classes, looked up like {@link Klass#getResource(String)} does, in the class and its
+ * superclasses.
+ * <p>
+ * Every lookup is cached, misses included. The {@code help*.html} entries of the archive or directory of each class
+ * are indexed once, and a class is only looked up in its class loader when its archive has the resource, since help
+ * resources are packaged next to their class. Classes whose location can not be indexed are always looked up.
+ */
+final class HelpResources {
+    private static final Logger LOG = Logger.getLogger(HelpResources.class.getName());
+
+    private static final ConcurrentMap<Key, Optional<String>> resources = new ConcurrentHashMap<>();
+
+    /** Help resources by class location, empty if the location can not be indexed. */
+    private static final ConcurrentMap<URL, Optional<Set<String>>> indexes = new ConcurrentHashMap<>();
+
+    private record Key(Class<?> type, String name) {}
+
+    private HelpResources() {}
+
+    /**
+     * @return the content of the first resource found, or {@code null}
+     */
+    @CheckForNull
+    static String get(String name, Class<?> type) throws IOException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            String help = getDeclared(name, c);
+            if (help != null) {
+                return help;
+            }
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static String getDeclared(String name, Class<?> c) throws IOException {
+        Key key = new Key(c, name);
+        Optional<String> cached = resources.get(key);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        String help = null;
+        if (mayHave(c, name)) {
+            help = read(Klass.java(c).getResource(name));
+        }
+        resources.put(key, Optional.ofNullable(help));
+        return help;
+    }
+
+    @SuppressFBWarnings(value = "URLCONNECTION_SSRF_FD", justification = "URL comes from a safe source")
+    @CheckForNull
+    private static String read(@CheckForNull URL u) throws IOException {
+        if (u == null) {
+            return null;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(u.openStream(), StandardCharsets.UTF_8))) {
+            return br.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    private static boolean mayHave(Class<?> c, String name) {
+        if (!isHelp(name) || name.contains("/")) {
+            return true;
+        }
+        CodeSource source = c.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return true;
+        }
+        Optional<Set<String>> index = indexes.get(source.getLocation());
+        if (index == null) {
+            index = index(source.getLocation());
+            indexes.putIfAbsent(source.getLocation(), index);
+        }
+        return index.map(entries -> entries.contains(c.getName().replace('.', '/').replace('$', '/') + '/' + name))
+                .orElse(true);
+    }
+
+    private static boolean isHelp(String entry) {
+        String fileName = entry.substring(entry.lastIndexOf('/') + 1);
+        return fileName.startsWith("help") && fileName.endsWith(".html");
+    }
+
+    private static Optional<Set<String>> index(URL location) {
+        try {
+            if (!"file".equals(location.getProtocol())) {
+                return Optional.empty();
+            }
+            Path path = Path.of(location.toURI());
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    return Optional.of(files.filter(Files::isRegularFile)
+                            .map(file -> path.relativize(file).toString().replace('\\', '/'))
+                            .filter(HelpResources::isHelp)
+                            .collect(Collectors.toUnmodifiableSet()));
+                }
+            } else if (Files.isRegularFile(path)) {
+                try (ZipFile zip = new ZipFile(path.toFile())) {
+                    return Optional.of(zip.stream()
+                            .map(ZipEntry::getName)
+                            .filter(HelpResources::isHelp)
+                            .collect(Collectors.toUnmodifiableSet()));
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Cannot index the help resources of " + location, ex);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,530 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.jenkinsci.pipeline_steps_doc_generator.ToAsciiDoc.ARRAY_LIST_OF;
+import static org.jenkinsci.pipeline_steps_doc_generator.ToAsciiDoc.BUILD_STEP_DESCRIPTION;
+
+import hudson.Main;
+import hudson.model.Descriptor;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+import org.jenkinsci.plugins.structs.SymbolLookup;
+import org.jenkinsci.plugins.structs.describable.ArrayType;
+import org.jenkinsci.plugins.structs.describable.AtomicType;
+import org.jenkinsci.plugins.structs.describable.DescribableModel;
+import org.jenkinsci.plugins.structs.describable.DescribableParameter;
+import org.jenkinsci.plugins.structs.describable.EnumType;
+import org.jenkinsci.plugins.structs.describable.ErrorType;
+import org.jenkinsci.plugins.structs.describable.HeterogeneousObjectType;
+import org.jenkinsci.plugins.structs.describable.HomogeneousObjectType;
+import org.jenkinsci.plugins.structs.describable.ParameterType;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.kohsuke.stapler.NoStaplerConstructorException;
+
+/**
+ * Extracts a {@link ModelSnapshot} from the loaded plugins, making every call on the plugins that
+ * {@link ToAsciiDoc} needs to render it.
+ * Models are extracted once per extractor, which is safe to share between threads: the models found by an
+ * extraction are only shared once it completes, so that another thread never sees a model whose parameters are still
+ * being extracted. Two threads extracting the same class at once both extract it, the first one done sharing its
+ * model.
+ * <p>
+ * With a timeout, each descriptor is extracted on a worker thread, and given up if it takes longer: the worker is
+ * interrupted and left behind, and the descriptor is documented by a placeholder showing the timeout. A worker left
+ * behind never shares the models it found.
+ */
+public class ModelExtractor {
+    private static final Logger LOG = Logger.getLogger(ModelExtractor.class.getName());
+    private static final Map<String, String> typeDescriptions = new HashMap<>();
+
+    static {
+        typeDescriptions.put("java.lang.Object", "<code>Object</code>");
+        typeDescriptions.put("java.util.List<java.lang.Object>", ARRAY_LIST_OF + "<code>Object</code>");
+        typeDescriptions.put("hudson.tasks.BuildStep", BUILD_STEP_DESCRIPTION);
+        typeDescriptions.put("java.util.List<hudson.tasks.BuildStep>", ARRAY_LIST_OF + BUILD_STEP_DESCRIPTION);
+    }
+
+    private final Map<Class<?>, ModelSnapshot.Model> models = new ConcurrentHashMap<>();
+
+    /** Describable models constructed so far, or why they could not be, since each class is documented repeatedly. */
+    private final Map<Class<?>, Outcome<DescribableModel<?>>> describables = new ConcurrentHashMap<>();
+
+    /** Models found by the extraction running on the current thread, if any, not shared yet. */
+    private final ThreadLocal<Map<Class<?>, ModelSnapshot.Model>> found = new ThreadLocal<>();
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(Worker::new);
+
+    /** Thread extracting a descriptor with a timeout. */
+    private static final class Worker extends Thread {
+        Worker(Runnable r) {
+            super(r, "Descriptor extraction");
+            setDaemon(true);
+        }
+    }
+
+    private volatile long timeoutMillis;
+
+    private final RunMetrics metrics;
+
+    public ModelExtractor() {
+        this(new RunMetrics());
+    }
+
+    /**
+     * @param metrics records the time spent on each descriptor
+     */
+    ModelExtractor(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the time given to the extraction of each descriptor.
+     *
+     * @param timeout the time, no limit if zero
+     */
+    void setTimeout(Duration timeout) {
+        timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Extracts the page of a plugin.
+     *
+     * @param byPlugin the descriptors of each section, in the order of the sections on the page
+     */
+    public ModelSnapshot.Plugin plugin(
+            String pluginName,
+            String displayName,
+            Map<String, List<QuasiDescriptor>> byPlugin,
+            boolean isDeprecated) {
+        return extracting(() -> extractPlugin(pluginName, displayName, byPlugin, isDeprecated));
+    }
+
+    private ModelSnapshot.Plugin extractPlugin(
+            String pluginName,
+            String displayName,
+            Map<String, List<QuasiDescriptor>> byPlugin,
+            boolean isDeprecated) {
+        Main.isUnitTest = true;
+        List<ModelSnapshot.Section> sections = new ArrayList<>();
+        for (Map.Entry<String, List<QuasiDescriptor>> entry : byPlugin.entrySet()) {
+            List<ModelSnapshot.Step> steps = new ArrayList<>();
+            for (QuasiDescriptor d : entry.getValue()) {
+                try (RunMetrics.Timer timer = metrics.descriptor(d.real.getClass().getName())) {
+                    steps.add(watchedStep(d));
+                }
+            }
+            sections.add(new ModelSnapshot.Section(entry.getKey(), steps));
+        }
+        return new ModelSnapshot.Plugin(pluginName, displayName, isDeprecated, sections);
+    }
+
+    /**
+     * Extracts the page of a Declarative directive.
+     */
+    public ModelSnapshot.Directive directive(String directiveName, Map<String, List<Descriptor>> descsByPlugin) {
+        return extracting(() -> extractDirective(directiveName, descsByPlugin));
+    }
+
+    private ModelSnapshot.Directive extractDirective(
+            String directiveName, Map<String, List<Descriptor>> descsByPlugin) {
+        Main.isUnitTest = true;
+        List<ModelSnapshot.Section> sections = new ArrayList<>();
+        // sorted by plugin, whatever the map given
+        for (Map.Entry<String, List<Descriptor>> entry : new TreeMap<>(descsByPlugin).entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                List<ModelSnapshot.Step> steps = new ArrayList<>();
+                for (Descriptor<?> d : entry.getValue()) {
+                    try (RunMetrics.Timer timer = metrics.descriptor(d.getClass().getName())) {
+                        steps.add(describable(d));
+                    }
+                }
+                sections.add(new ModelSnapshot.Section(entry.getKey(), steps));
+            }
+        }
+        return new ModelSnapshot.Directive(directiveName, sections);
+    }
+
+    /**
+     * Extracts a step, as documented by {@link ToAsciiDoc#generateStepHelp(RenderContext, ModelSnapshot.Step)}.
+     */
+    public ModelSnapshot.Step step(QuasiDescriptor d) {
+        return extracting(() -> watchedStep(d));
+    }
+
+    private ModelSnapshot.Step watchedStep(QuasiDescriptor d) {
+        return watch(d.real, () -> extractStep(d), timeout -> {
+            List<String> descriptors = new ArrayList<>(List.of(d.real.getClass().getName()));
+            if (d.getParent() != null) {
+                descriptors.add(d.getParent().getClass().getName());
+            }
+            return new ModelSnapshot.Step(
+                    d.real.clazz.getName(),
+                    descriptors,
+                    false,
+                    Outcome.value(d.real.clazz.getName()),
+                    "(no description)",
+                    Outcome.failed(timeout),
+                    null,
+                    null,
+                    null);
+        });
+    }
+
+    private ModelSnapshot.Step extractStep(QuasiDescriptor d) {
+        List<String> descriptors = new ArrayList<>(List.of(d.real.getClass().getName()));
+        if (d.getParent() != null) {
+            descriptors.add(d.getParent().getClass().getName());
+        }
+        Outcome<String> symbol = Outcome.of(d::getSymbol);
+        Outcome<Boolean> delegated;
+        Outcome<String> delegateSymbol = null;
+        Outcome<String> help = null;
+        Outcome<ModelSnapshot.Model> model = null;
+        try {
+            Optional<Descriptor<?>> delegateExample = PipelineStepExtractor.getMetaDelegates(d.real)
+                    .filter(sub -> SymbolLookup.getSymbolValue(sub.clazz).isEmpty())
+                    .findFirst();
+            delegated = Outcome.value(delegateExample.isPresent());
+            help = Outcome.of(() -> getHelp("help.html", d.real.clazz));
+            if (delegateExample.isPresent()) {
+                delegateSymbol = Outcome.of(() ->
+                        new QuasiDescriptor(delegateExample.get(), (StepDescriptor) d.real).getSymbol());
+            } else {
+                model = Outcome.of(() -> extractModel(describe(d.real.clazz).get()));
+            }
+        } catch (Exception | Error ex) {
+            delegated = Outcome.failed(ex);
+        }
+        return new ModelSnapshot.Step(
+                d.real.clazz.getName(),
+                descriptors,
+                false,
+                symbol,
+                getDisplayName(d.real),
+                delegated,
+                delegateSymbol,
+                help,
+                model);
+    }
+
+    /**
+     * Extracts a step or describable used in a Declarative directive.
+     */
+    private ModelSnapshot.Step describable(Descriptor<?> d) {
+        return watch(d, () -> extractDescribable(d), timeout -> new ModelSnapshot.Step(
+                d.clazz.getName(),
+                List.of(d.getClass().getName()),
+                !(d instanceof StepDescriptor),
+                Outcome.value(d.clazz.getName()),
+                "(no description)",
+                d instanceof StepDescriptor ? Outcome.failed(timeout) : null,
+                null,
+                null,
+                Outcome.failed(timeout)));
+    }
+
+    private ModelSnapshot.Step extractDescribable(Descriptor<?> d) {
+        if (d instanceof StepDescriptor) {
+            return extractStep(new QuasiDescriptor(d, null));
+        }
+        Outcome<String> symbol = Outcome.of(() -> {
+            Set<String> symbols = SymbolLookup.getSymbolValue(d);
+            return symbols.isEmpty() ? null : symbols.iterator().next();
+        });
+        Outcome<ModelSnapshot.Model> model = null;
+        if (!symbol.isFailed() && symbol.getUnchecked() != null) {
+            model = Outcome.of(() -> extractModel(describe(d.clazz).get()));
+        }
+        return new ModelSnapshot.Step(
+                d.clazz.getName(),
+                List.of(d.getClass().getName()),
+                true,
+                symbol,
+                getDisplayName(d),
+                null,
+                null,
+                null,
+                model);
+    }
+
+    /**
+     * Constructs the describable model of a class once, since each class is documented repeatedly. Why it could not
+     * be constructed is remembered too, logged the first time and only counted afterwards. Errors of the virtual
+     * machine are not remembered.
+     */
+    private Outcome<DescribableModel<?>> describe(Class<?> clazz) {
+        Outcome<DescribableModel<?>> describable = describables.get(clazz);
+        if (describable == null) {
+            try {
+                describable = Outcome.value(new DescribableModel<>(clazz));
+            } catch (VirtualMachineError ex) {
+                throw ex;
+            } catch (Exception | Error ex) {
+                describable = Outcome.failed(ex);
+            }
+            Outcome<DescribableModel<?>> previous = describables.putIfAbsent(clazz, describable);
+            if (previous != null) {
+                describable = previous;
+            }
+        }
+        if (describable.isFailed()) {
+            // logged with its stack trace where the page documenting the class is rendered
+            ToAsciiDoc.getFailures().failed(Level.FINE, "Cannot describe " + clazz.getName(), describable.getFailure());
+        }
+        return describable;
+    }
+
+    /**
+     * Runs an extraction, sharing the models it found once it completes, unless the current thread is already
+     * running one.
+     */
+    private <T> T extracting(Supplier<T> extraction) {
+        if (found.get() != null) {
+            return extraction.get();
+        }
+        Map<Class<?>, ModelSnapshot.Model> extracted = new HashMap<>();
+        found.set(extracted);
+        try {
+            T result = extraction.get();
+            share(extracted);
+            return result;
+        } finally {
+            found.remove();
+        }
+    }
+
+    private void share(Map<Class<?>, ModelSnapshot.Model> extracted) {
+        for (Map.Entry<Class<?>, ModelSnapshot.Model> entry : extracted.entrySet()) {
+            models.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static String getDisplayName(Descriptor<?> d) {
+        try {
+            return d.getDisplayName();
+        } catch (Exception | Error e) {
+            ToAsciiDoc.getFailures().failed(Level.WARNING, "Cannot get display name of " + d.clazz, e);
+        }
+        return "(no description)";
+    }
+
+    /**
+     * Runs the extraction of a descriptor, on a worker thread if there is a timeout.
+     *
+     * @param placeholder documents the descriptor when its extraction timed out
+     */
+    private ModelSnapshot.Step watch(
+            Descriptor<?> d,
+            Supplier<ModelSnapshot.Step> extraction,
+            Function<TimeoutException, ModelSnapshot.Step> placeholder) {
+        long timeout = timeoutMillis;
+        if (timeout <= 0 || Thread.currentThread() instanceof Worker) {
+            return extraction.get();
+        }
+        Map<Class<?>, ModelSnapshot.Model> extracted = new HashMap<>();
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        AtomicLong allocated = new AtomicLong(-1);
+        Future<ModelSnapshot.Step> future = workers.submit(() -> {
+            worker.set(Thread.currentThread());
+            found.set(extracted);
+            long before = RunMetrics.threadAllocatedBytes();
+            try {
+                return extraction.get();
+            } finally {
+                found.remove();
+                long after = RunMetrics.threadAllocatedBytes();
+                allocated.set(before < 0 || after < 0 ? -1 : after - before);
+            }
+        });
+        try {
+            ModelSnapshot.Step step = future.get(timeout, TimeUnit.MILLISECONDS);
+            metrics.allocatedByWorker(allocated.get());
+            share(extracted);
+            return step;
+        } catch (TimeoutException ex) {
+            StringBuilder stack = new StringBuilder();
+            Thread t = worker.get();
+            if (t != null) {
+                for (StackTraceElement element : t.getStackTrace()) {
+                    stack.append("\tat ").append(element).append('\n');
+                }
+            }
+            future.cancel(true);
+            String name = d.getClass().getName();
+            LOG.warning("Extraction of " + name + " timed out after " + timeout + " ms, documented by a placeholder."
+                    + " It was running:\n" + stack);
+            metrics.timeout(name, stack.toString());
+            return placeholder.apply(new TimeoutException("Extraction took longer than " + timeout + " ms"));
+        } catch (ExecutionException ex) {
+            metrics.allocatedByWorker(allocated.get());
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while extracting " + d.getClass().getName(), ex);
+        }
+    }
+
+    /**
+     * Extracts a model and the models nested in it.
+     */
+    ModelSnapshot.Model model(DescribableModel<?> model) {
+        return extracting(() -> extractModel(model));
+    }
+
+    private ModelSnapshot.Model extractModel(DescribableModel<?> model) {
+        Map<Class<?>, ModelSnapshot.Model> target = found.get();
+        ModelSnapshot.Model extracted = models.get(model.getType());
+        if (extracted == null) {
+            extracted = target.get(model.getType());
+        }
+        if (extracted == null) {
+            extracted = new ModelSnapshot.Model(model.getType().getName());
+            target.put(model.getType(), extracted);
+            extracted.help = Outcome.of(model::getHelp);
+            List<ModelSnapshot.Param> params = new ArrayList<>();
+            for (Object o : model.getParameters()) {
+                params.add(param((DescribableParameter) o));
+            }
+            extracted.params = params;
+        }
+        return extracted;
+    }
+
+    private ModelSnapshot.Param param(DescribableParameter param) {
+        Outcome<ModelSnapshot.Type> type = null;
+        try {
+            String rawTypeDesc = typeDescriptions.get(param.getRawType().getTypeName());
+            if (rawTypeDesc == null) {
+                ParameterType t = param.getType();
+                if (!(t instanceof AtomicType)) {
+                    type = Outcome.value(extractType(t));
+                }
+            }
+        } catch (RuntimeException | Error ex) {
+            type = Outcome.failed(ex);
+        }
+        return new ModelSnapshot.Param(
+                param.getName(), param.isRequired(), getTypeDescription(param), Outcome.of(param::getHelp), type);
+    }
+
+    /**
+     * Extracts a type, as described by {@link ToAsciiDoc#describeType(RenderContext, ModelSnapshot.Type, String)}.
+     */
+    ModelSnapshot.Type type(ParameterType type) {
+        return extracting(() -> extractType(type));
+    }
+
+    private ModelSnapshot.Type extractType(ParameterType type) {
+        if (type instanceof EnumType enumType) {
+            return new ModelSnapshot.EnumValues(Arrays.asList(enumType.getValues()));
+        } else if (type instanceof ArrayType arrayType) {
+            return new ModelSnapshot.ArrayOf(extractType(arrayType.getElementType()));
+        } else if (type instanceof HomogeneousObjectType objectType) {
+            return new ModelSnapshot.NestedObject(extractModel(objectType.getSchemaType()));
+        } else if (type instanceof HeterogeneousObjectType objectType) {
+            if (objectType.getType() == Object.class) {
+                return new ModelSnapshot.NestedChoice(null, null);
+            }
+            return new ModelSnapshot.NestedChoice(objectType.getType().getName(), Outcome.of(() -> {
+                List<ModelSnapshot.Choice> choices = new ArrayList<>();
+                for (Map.Entry<String, DescribableModel<?>> entry :
+                        objectType.getTypes().entrySet()) {
+                    Outcome<String> symbol = Outcome.of(() -> {
+                        Set<String> symbols =
+                                SymbolLookup.getSymbolValue(entry.getValue().getType());
+                        return symbols.isEmpty()
+                                ? DescribableModel.CLAZZ + ": '" + entry.getKey() + "'"
+                                : symbols.iterator().next();
+                    });
+                    choices.add(new ModelSnapshot.Choice(symbol, extractModel(entry.getValue())));
+                }
+                return choices;
+            }));
+        } else if (type instanceof ErrorType errorType) { // Shouldn't hit this; open a ticket
+            Exception x = errorType.getError();
+            LOG.log(Level.FINE, "Encountered ErrorType object with exception:" + x);
+            if (x instanceof NoStaplerConstructorException || x instanceof UnsupportedOperationException) {
+                return new ModelSnapshot.Unsupported(true, describeErrorType(type));
+            } else {
+                return new ModelSnapshot.Unsupported(false, x.toString());
+            }
+        } else {
+            return new ModelSnapshot.Atomic();
+        }
+    }
+
+    private static String describeErrorType(ParameterType type) {
+        return type.getActualType()
+                .toString()
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&#39;");
+    }
+
+    private static String getTypeDescription(DescribableParameter param) {
+        String typeDesc = "";
+        try {
+            String rawTypeDesc = typeDescriptions.get(param.getRawType().getTypeName());
+            if (rawTypeDesc != null) {
+                typeDesc = " : " + rawTypeDesc;
+            } else {
+                ParameterType type = param.getType();
+                if (type instanceof AtomicType) {
+                    typeDesc = " : " + type;
+                } else if (type instanceof ArrayType arrayType) {
+                    type = arrayType.getElementType();
+                    if (type instanceof AtomicType) {
+                        typeDesc = " : " + ARRAY_LIST_OF + type;
+                    }
+                }
+            }
+        } catch (RuntimeException | Error ex) {
+            ToAsciiDoc.getFailures()
+                    .failed(Level.WARNING, "Restricted description of attribute " + param.getName(), ex);
+        }
+        return typeDesc;
+    }
+
+    /**
+     * Copy of {@link DescribableModel#getHelp()}, used in case DescribableModel can't be instantiated.
+     * @param name resource name
+     * @param type class
+     * @return file content
+     * @throws IOException if file can't be read
+     */
+    static String getHelp(String name, Class<?> type) throws IOException {
+        return HelpResources.get(name, type);
+    }
+}
@@ -0,0 +1,579 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Everything documented by {@link ToAsciiDoc}, extracted from the plugins by {@link ModelExtractor}, so that pages
+ * can be rendered without loading the plugins.
+ * The snapshot can be saved to a file, gzipped if its name ends with {@code .gz}, and read back by another run.
+ * <p>
+ * Calls made on the plugins which failed during the extraction are recorded as such, and the failure is thrown
+ * again where the rendering uses their value, so that it is handled exactly as it would have been.
+ */
+public class ModelSnapshot {
+    static final int VERSION = 1;
+
+    final List<Plugin> plugins;
+    final List<Directive> directives;
+
+    ModelSnapshot(List<Plugin> plugins, List<Directive> directives) {
+        this.plugins = plugins;
+        this.directives = directives;
+    }
+
+    /**
+     * Page of a plugin, with its steps in sections such as {@code Steps}.
+     */
+    record Plugin(String name, String displayName, boolean deprecated, List<Section> sections) {}
+
+    /**
+     * Page of a Declarative directive, with its steps and describables in sections by plugin.
+     */
+    record Directive(String name, List<Section> sections) {}
+
+    record Section(String name, List<Step> steps) {}
+
+    /**
+     * A step, or a describable used in a Declarative directive.
+     *
+     * @param type the documented class
+     * @param descriptors the classes of the descriptor, and of the metastep using it if any
+     * @param describable whether this is a describable rather than a step
+     * @param symbol the symbol of a step, or the first symbol of a describable if it has any
+     * @param delegated whether this is a metastep documented through one of its delegates, {@code null} for a
+     *     describable
+     * @param delegateSymbol the symbol of the delegate, if delegated
+     * @param help the {@code help.html} of a step
+     * @param model the documented model, unless delegated
+     */
+    record Step(
+            String type,
+            List<String> descriptors,
+            boolean describable,
+            Outcome<String> symbol,
+            String displayName,
+            @CheckForNull Outcome<Boolean> delegated,
+            @CheckForNull Outcome<String> delegateSymbol,
+            @CheckForNull Outcome<String> help,
+            @CheckForNull Outcome<Model> model) {}
+
+    /**
+     * A {@code DescribableModel}. Models reference each other, possibly in cycles, so their content is filled once
+     * they are registered.
+     */
+    static final class Model {
+        final String type;
+        Outcome<String> help;
+        List<Param> params;
+
+        Model(String type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * @param typeDescription the type following the name of the parameter, such as {@code " : String"}
+     * @param type the type described below the help, or {@code null} if there is nothing to describe
+     */
+    record Param(
+            String name,
+            boolean required,
+            String typeDescription,
+            Outcome<String> help,
+            @CheckForNull Outcome<Type> type) {}
+
+    sealed interface Type permits EnumValues, ArrayOf, NestedObject, NestedChoice, Unsupported, Atomic {}
+
+    record EnumValues(List<String> values) implements Type {}
+
+    record ArrayOf(Type element) implements Type {}
+
+    record NestedObject(Model model) implements Type {}
+
+    /**
+     * @param baseType the base type of the choices, or {@code null} for any object, in which case there are none
+     */
+    record NestedChoice(@CheckForNull String baseType, @CheckForNull Outcome<List<Choice>> choices)
+            implements Type {}
+
+    record Choice(Outcome<String> symbol, Model model) {}
+
+    /**
+     * @param listed whether the type is listed, or else only the error is
+     */
+    record Unsupported(boolean listed, String text) implements Type {}
+
+    record Atomic() implements Type {}
+
+    /**
+     * Value returned by a call made on the plugins, or what it threw.
+     */
+    static final class Outcome<T> {
+        @CheckForNull
+        private final T value;
+
+        @CheckForNull
+        private final Failure failure;
+
+        /** What the call threw, with its stack trace, when it was made in this run rather than read from a file. */
+        @CheckForNull
+        private final Throwable thrown;
+
+        private Outcome(@CheckForNull T value, @CheckForNull Failure failure, @CheckForNull Throwable thrown) {
+            this.value = value;
+            this.failure = failure;
+            this.thrown = thrown;
+        }
+
+        static <T> Outcome<T> of(Callable<T> call) {
+            try {
+                return value(call.call());
+            } catch (Exception | Error ex) {
+                return failed(ex);
+            }
+        }
+
+        static <T> Outcome<T> value(@CheckForNull T value) {
+            return new Outcome<>(value, null, null);
+        }
+
+        static <T> Outcome<T> failed(Throwable failure) {
+            return new Outcome<>(null, Failure.of(failure), failure);
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        /**
+         * @return what the call threw, or {@code null} if it returned. Its stack trace is only kept when the call was
+         *     made in this run.
+         */
+        @CheckForNull
+        Throwable getFailure() {
+            if (thrown != null) {
+                return thrown;
+            }
+            return failure == null ? null : failure.toThrowable();
+        }
+
+        /**
+         * @throws Exception what the call threw, with its stack trace if the call was made in this run
+         */
+        @CheckForNull
+        T get() throws Exception {
+            if (thrown instanceof Error error) {
+                throw error;
+            } else if (thrown instanceof Exception exception) {
+                throw exception;
+            } else if (failure != null) {
+                failure.rethrow();
+            }
+            return value;
+        }
+
+        /**
+         * Same as {@link #get()}, for calls which cannot throw checked exceptions.
+         */
+        @CheckForNull
+        T getUnchecked() {
+            try {
+                return get();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * What a call threw, as far as the rendering is concerned: its kind and its {@code toString()}.
+     */
+    record Failure(Kind kind, String text) {
+        enum Kind {
+            EXCEPTION,
+            RUNTIME_EXCEPTION,
+            ERROR
+        }
+
+        static Failure of(Throwable failure) {
+            Kind kind = failure instanceof Error
+                    ? Kind.ERROR
+                    : failure instanceof RuntimeException ? Kind.RUNTIME_EXCEPTION : Kind.EXCEPTION;
+            return new Failure(kind, failure.toString());
+        }
+
+        void rethrow() throws Exception {
+            Throwable recorded = toThrowable();
+            if (recorded instanceof Error error) {
+                throw error;
+            }
+            throw (Exception) recorded;
+        }
+
+        /**
+         * @return a throwable of the same kind and {@code toString()} as what the call threw, without stack trace
+         */
+        Throwable toThrowable() {
+            return switch (kind) {
+                case EXCEPTION -> new RecordedException(text);
+                case RUNTIME_EXCEPTION -> new RecordedRuntimeException(text);
+                default -> new RecordedError(text);
+            };
+        }
+    }
+
+    private static final class RecordedException extends Exception {
+        RecordedException(String text) {
+            super(text, null, false, false);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class RecordedRuntimeException extends RuntimeException {
+        RecordedRuntimeException(String text) {
+            super(text, null, false, false);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class RecordedError extends Error {
+        RecordedError(String text) {
+            super(text, null, false, false);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Saves the snapshot, to be read by {@link #read(Path)}.
+     */
+    public void write(Path file) throws IOException {
+        Map<String, Model> models = new LinkedHashMap<>();
+        JSONArray jsonPlugins = new JSONArray();
+        for (Plugin plugin : plugins) {
+            jsonPlugins.put(new JSONObject()
+                    .put("name", plugin.name())
+                    .put("displayName", plugin.displayName())
+                    .put("deprecated", plugin.deprecated())
+                    .put("sections", toJson(plugin.sections(), models)));
+        }
+        JSONArray jsonDirectives = new JSONArray();
+        for (Directive directive : directives) {
+            jsonDirectives.put(new JSONObject()
+                    .put("name", directive.name())
+                    .put("sections", toJson(directive.sections(), models)));
+        }
+        JSONArray jsonModels = new JSONArray();
+        List<Model> todo = new ArrayList<>(models.values());
+        for (int i = 0; i < todo.size(); i++) { // grows as nested models are found
+            Model model = todo.get(i);
+            JSONArray params = new JSONArray();
+            for (Param param : model.params) {
+                params.put(new JSONObject()
+                        .put("name", param.name())
+                        .put("required", param.required())
+                        .put("typeDescription", param.typeDescription())
+                        .put("help", toJson(param.help(), h -> h))
+                        .put("type", toJson(param.type(), type -> toJson(type, models, todo))));
+            }
+            jsonModels.put(new JSONObject()
+                    .put("type", model.type)
+                    .put("help", toJson(model.help, h -> h))
+                    .put("params", params));
+        }
+        JSONObject json = new JSONObject()
+                .put("version", VERSION)
+                .put("models", jsonModels)
+                .put("plugins", jsonPlugins)
+                .put("directives", jsonDirectives);
+        try (OutputStream out = Files.newOutputStream(file);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        isGzipped(file) ? new GZIPOutputStream(out) : out, StandardCharsets.UTF_8))) {
+            json.write(writer);
+        }
+    }
+
+    private static boolean isGzipped(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    private static JSONArray toJson(List<Section> sections, Map<String, Model> models) {
+        JSONArray jsonSections = new JSONArray();
+        for (Section section : sections) {
+            JSONArray steps = new JSONArray();
+            for (Step step : section.steps()) {
+                steps.put(new JSONObject()
+                        .put("type", step.type())
+                        .put("descriptors", new JSONArray(step.descriptors()))
+                        .put("describable", step.describable())
+                        .put("symbol", toJson(step.symbol(), s -> s))
+                        .put("displayName", step.displayName())
+                        .put("delegated", toJson(step.delegated(), d -> d))
+                        .put("delegateSymbol", toJson(step.delegateSymbol(), s -> s))
+                        .put("help", toJson(step.help(), h -> h))
+                        .put("model", toJson(step.model(), model -> register(model, models, null))));
+            }
+            jsonSections.put(new JSONObject().put("name", section.name()).put("steps", steps));
+        }
+        return jsonSections;
+    }
+
+    private static String register(Model model, Map<String, Model> models, @CheckForNull List<Model> todo) {
+        if (models.putIfAbsent(model.type, model) == null && todo != null) {
+            todo.add(model);
+        }
+        return model.type;
+    }
+
+    private static JSONObject toJson(Type type, Map<String, Model> models, List<Model> todo) {
+        JSONObject json = new JSONObject();
+        if (type instanceof EnumValues enumValues) {
+            json.put("kind", "enum").put("values", new JSONArray(enumValues.values()));
+        } else if (type instanceof ArrayOf arrayOf) {
+            json.put("kind", "array").put("element", toJson(arrayOf.element(), models, todo));
+        } else if (type instanceof NestedObject nested) {
+            json.put("kind", "object").put("model", register(nested.model(), models, todo));
+        } else if (type instanceof NestedChoice choice) {
+            json.put("kind", "choice").put("baseType", choice.baseType());
+            json.put("choices", toJson(choice.choices(), choices -> {
+                JSONArray array = new JSONArray();
+                for (Choice c : choices) {
+                    array.put(new JSONObject()
+                            .put("symbol", toJson(c.symbol(), s -> s))
+                            .put("model", register(c.model(), models, todo)));
+                }
+                return array;
+            }));
+        } else if (type instanceof Unsupported unsupported) {
+            json.put("kind", "unsupported").put("listed", unsupported.listed()).put("text", unsupported.text());
+        } else {
+            json.put("kind", "atomic");
+        }
+        return json;
+    }
+
+    @CheckForNull
+    private static <T> JSONObject toJson(@CheckForNull Outcome<T> outcome, Function<T, Object> value) {
+        if (outcome == null) {
+            return null;
+        }
+        if (outcome.failure != null) {
+            return new JSONObject()
+                    .put("failure", outcome.failure.kind().name())
+                    .put("text", outcome.failure.text());
+        }
+        return new JSONObject().put("value", outcome.value == null ? JSONObject.NULL : value.apply(outcome.value));
+    }
+
+    /**
+     * Combines the snapshots extracted by the shards of a run into the snapshot of the whole run.
+     * Plugin pages are sorted by name, and the sections of each directive are in the order a single run lists them.
+     */
+    public static ModelSnapshot merge(List<ModelSnapshot> shards) {
+        Map<String, Plugin> plugins = new TreeMap<>();
+        Map<String, Map<String, List<Step>>> directives = new LinkedHashMap<>();
+        for (ModelSnapshot shard : shards) {
+            for (Plugin plugin : shard.plugins) {
+                if (plugins.putIfAbsent(plugin.name(), plugin) != null) {
+                    throw new IllegalArgumentException("The page of " + plugin.name() + " is in several shards");
+                }
+            }
+            for (Directive directive : shard.directives) {
+                // sorted by plugin, like ModelExtractor does
+                Map<String, List<Step>> sections = directives.computeIfAbsent(directive.name(), k -> new TreeMap<>());
+                for (Section section : directive.sections()) {
+                    if (sections.putIfAbsent(section.name(), section.steps()) != null) {
+                        throw new IllegalArgumentException(
+                                "The " + section.name() + " section of " + directive.name() + " is in several shards");
+                    }
+                }
+            }
+        }
+        List<Directive> merged = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<Step>>> directive : directives.entrySet()) {
+            List<Section> sections = new ArrayList<>();
+            for (Map.Entry<String, List<Step>> section : directive.getValue().entrySet()) {
+                sections.add(new Section(section.getKey(), section.getValue()));
+            }
+            merged.add(new Directive(directive.getKey(), sections));
+        }
+        return new ModelSnapshot(new ArrayList<>(plugins.values()), merged);
+    }
+
+    /**
+     * Reads a snapshot saved by {@link #write(Path)}.
+     */
+    public static ModelSnapshot read(Path file) throws IOException {
+        JSONObject json;
+        try (InputStream in = Files.newInputStream(file);
+                InputStream content = isGzipped(file) ? new GZIPInputStream(in) : in;
+                Reader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            json = new JSONObject(new JSONTokener(reader));
+        }
+        if (json.optInt("version") != VERSION) {
+            throw new IOException(file + " is not a model of version " + VERSION);
+        }
+        JSONArray jsonModels = json.getJSONArray("models");
+        Map<String, Model> models = new HashMap<>();
+        for (int i = 0; i < jsonModels.length(); i++) {
+            String type = jsonModels.getJSONObject(i).getString("type");
+            models.put(type, new Model(type));
+        }
+        for (int i = 0; i < jsonModels.length(); i++) {
+            JSONObject jsonModel = jsonModels.getJSONObject(i);
+            Model model = models.get(jsonModel.getString("type"));
+            model.help = outcome(jsonModel, "help", String.class::cast);
+            List<Param> params = new ArrayList<>();
+            JSONArray jsonParams = jsonModel.getJSONArray("params");
+            for (int j = 0; j < jsonParams.length(); j++) {
+                JSONObject param = jsonParams.getJSONObject(j);
+                params.add(new Param(
+                        param.getString("name"),
+                        param.getBoolean("required"),
+                        param.getString("typeDescription"),
+                        outcome(param, "help", String.class::cast),
+                        outcome(param, "type", type -> type((JSONObject) type, models))));
+            }
+            model.params = params;
+        }
+        List<Plugin> plugins = new ArrayList<>();
+        JSONArray jsonPlugins = json.getJSONArray("plugins");
+        for (int i = 0; i < jsonPlugins.length(); i++) {
+            JSONObject plugin = jsonPlugins.getJSONObject(i);
+            plugins.add(new Plugin(
+                    plugin.getString("name"),
+                    plugin.getString("displayName"),
+                    plugin.getBoolean("deprecated"),
+                    sections(plugin.getJSONArray("sections"), models)));
+        }
+        List<Directive> directives = new ArrayList<>();
+        JSONArray jsonDirectives = json.getJSONArray("directives");
+        for (int i = 0; i < jsonDirectives.length(); i++) {
+            JSONObject directive = jsonDirectives.getJSONObject(i);
+            directives.add(
+                    new Directive(directive.getString("name"), sections(directive.getJSONArray("sections"), models)));
+        }
+        return new ModelSnapshot(plugins, directives);
+    }
+
+    private static List<Section> sections(JSONArray jsonSections, Map<String, Model> models) {
+        List<Section> sections = new ArrayList<>();
+        for (int i = 0; i < jsonSections.length(); i++) {
+            JSONObject section = jsonSections.getJSONObject(i);
+            List<Step> steps = new ArrayList<>();
+            JSONArray jsonSteps = section.getJSONArray("steps");
+            for (int j = 0; j < jsonSteps.length(); j++) {
+                JSONObject step = jsonSteps.getJSONObject(j);
+                List<String> descriptors = new ArrayList<>();
+                JSONArray jsonDescriptors = step.getJSONArray("descriptors");
+                for (int k = 0; k < jsonDescriptors.length(); k++) {
+                    descriptors.add(jsonDescriptors.getString(k));
+                }
+                steps.add(new Step(
+                        step.getString("type"),
+                        descriptors,
+                        step.getBoolean("describable"),
+                        outcome(step, "symbol", String.class::cast),
+                        step.getString("displayName"),
+                        outcome(step, "delegated", Boolean.class::cast),
+                        outcome(step, "delegateSymbol", String.class::cast),
+                        outcome(step, "help", String.class::cast),
+                        outcome(step, "model", model -> models.get((String) model))));
+            }
+            sections.add(new Section(section.getString("name"), steps));
+        }
+        return sections;
+    }
+
+    private static Type type(JSONObject json, Map<String, Model> models) {
+        switch (json.getString("kind")) {
+            case "enum":
+                List<String> values = new ArrayList<>();
+                JSONArray jsonValues = json.getJSONArray("values");
+                for (int i = 0; i < jsonValues.length(); i++) {
+                    values.add(jsonValues.getString(i));
+                }
+                return new EnumValues(values);
+            case "array":
+                return new ArrayOf(type(json.getJSONObject("element"), models));
+            case "object":
+                return new NestedObject(models.get(json.getString("model")));
+            case "choice":
+                return new NestedChoice(json.optString("baseType", null), outcome(json, "choices", array -> {
+                    List<Choice> choices = new ArrayList<>();
+                    JSONArray jsonChoices = (JSONArray) array;
+                    for (int i = 0; i < jsonChoices.length(); i++) {
+                        JSONObject choice = jsonChoices.getJSONObject(i);
+                        choices.add(new Choice(
+                                outcome(choice, "symbol", String.class::cast),
+                                models.get(choice.getString("model"))));
+                    }
+                    return choices;
+                }));
+            case "unsupported":
+                return new Unsupported(json.getBoolean("listed"), json.getString("text"));
+            default:
+                return new Atomic();
+        }
+    }
+
+    @CheckForNull
+    private static <T> Outcome<T> outcome(JSONObject json, String key, Function<Object, T> value) {
+        JSONObject outcome = json.optJSONObject(key);
+        if (outcome == null) {
+            return null;
+        }
+        if (outcome.has("failure")) {
+            return new Outcome<>(
+                    null,
+                    new Failure(Failure.Kind.valueOf(outcome.getString("failure")), outcome.getString("text")),
+                    null);
+        }
+        Object v = outcome.get("value");
+        return Outcome.value(v == JSONObject.NULL ? null : value.apply(v));
+    }
+}
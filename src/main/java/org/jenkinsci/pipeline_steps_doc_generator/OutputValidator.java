@@ -0,0 +1,333 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Checks the pages written by a run before they are published: the front matter of each page, balanced
+ * {@code <li>} and {@code ++++} blocks, links to the separate pages of the parameter classes, and HTML left
+ * unsanitized. The size of each page and the time of each phase of the run are compared to a baseline written by a
+ * previous run, if any.
+ * <p>
+ * Pages are read from the folders or zip files written by {@link PipelineStepExtractor}, and checked on several
+ * threads. Exits with {@code 1} if a check fails, and {@code 2} if the pages cannot be read.
+ */
+public class OutputValidator {
+    private static final Logger LOG = Logger.getLogger(OutputValidator.class.getName());
+
+    static final int VERSION = 1;
+    static final String ASCII = "allAscii/";
+    static final String DECLARATIVE = "declarative/";
+    private static final String PARAMS_LINK = "\"/doc/pipeline/steps/params/";
+    private static final String FRONT_MATTER = "---\nlayout: pipelinesteps\ntitle: \"";
+    /** Phases faster than this are not compared, their time being mostly noise. */
+    private static final long MIN_COMPARED_MILLIS = 10_000;
+    private static final int MAX_LISTED = 50;
+
+    /** Elements, event handlers and URLs removed by the sanitization of the help texts. */
+    private static final Pattern UNSANITIZED = Pattern.compile(
+            "<(script|iframe|object|embed|style|form)\\b"
+                    + "|<[a-z][^>]*\\son[a-z]+\\s*="
+                    + "|(href|src)\\s*=\\s*\"\\s*javascript:",
+            Pattern.CASE_INSENSITIVE);
+
+    static {
+        System.setProperty("java.util.logging.SimpleFormatter.format", "[%4$-7s] %5$s %6$s%n");
+    }
+
+    @Option(
+            name = "-asciiDest",
+            usage = "Folder or zip file of the steps asciidoc.  Defaults to ./allAscii, or ./allAscii.zip")
+    public String asciiDest = null;
+
+    @Option(
+            name = "-declarativeDest",
+            usage = "Folder or zip file of the Declarative asciidoc.  Defaults to ./declarative, or ./declarative.zip")
+    public String declarativeDest = null;
+
+    @Option(name = "-metrics", usage = "JSON report of the run written by -metrics, to compare the time of its phases.")
+    public String metricsReport = null;
+
+    @Option(
+            name = "-baseline",
+            usage = "Baseline written by -baselineDest after a previous run, to compare the pages and phases to.")
+    public String baseline = null;
+
+    @Option(name = "-baselineDest", usage = "File to write the size of each page and time of each phase to.")
+    public String baselineDest = null;
+
+    @Option(
+            name = "-sizeThreshold",
+            usage = "Fraction of its baseline size that a page may lose before the check fails.  Defaults to 0.5")
+    public double sizeThreshold = 0.5;
+
+    @Option(
+            name = "-timeThreshold",
+            usage = "Fraction of its baseline time that a phase of " + MIN_COMPARED_MILLIS / 1000
+                    + " seconds or more may take in addition before the check fails.  Defaults to 1")
+    public double timeThreshold = 1;
+
+    @Option(name = "-threads", usage = "Number of pages checked concurrently.  Defaults to the number of processors.")
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    public static void main(String[] args) {
+        OutputValidator validator = new OutputValidator();
+        int status;
+        try {
+            new CmdLineParser(validator).parseArgument(args);
+            status = validator.validate().isEmpty() ? 0 : 1;
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, "Could not check the pages", ex);
+            status = 2;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Checks the pages, and compares them and the run to the baseline.
+     *
+     * @return the problems found, logged
+     */
+    List<String> validate() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Map<String, String> pages = new TreeMap<>();
+        read(output(asciiDest, "allAscii"), ASCII, pages);
+        read(output(declarativeDest, "declarative"), DECLARATIVE, pages);
+        if (pages.isEmpty()) {
+            throw new IOException("No page found in " + output(asciiDest, "allAscii"));
+        }
+        List<String> problems = new ArrayList<>(check(pages, threads));
+
+        JSONObject current = baseline(pages, metricsReport == null ? null : Path.of(metricsReport));
+        if (baseline != null && Files.isRegularFile(Path.of(baseline))) {
+            JSONObject previous = new JSONObject(Files.readString(Path.of(baseline), StandardCharsets.UTF_8));
+            if (previous.optInt("version") == VERSION) {
+                problems.addAll(compare(previous, current, sizeThreshold, timeThreshold));
+            } else {
+                LOG.warning(baseline + " was written by another version, not comparing to it");
+            }
+        }
+        if (baselineDest != null) {
+            Files.writeString(Path.of(baselineDest), current.toString(2), StandardCharsets.UTF_8);
+        }
+
+        for (String problem : problems.subList(0, Math.min(MAX_LISTED, problems.size()))) {
+            LOG.warning(problem);
+        }
+        LOG.info("Checked " + pages.size() + " pages in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, found " + problems.size()
+                + " problems");
+        return problems;
+    }
+
+    /**
+     * @return the folder given, or the zip file by default if there is no folder
+     */
+    private static Path output(@CheckForNull String dest, String name) {
+        if (dest != null) {
+            return Path.of(dest);
+        }
+        Path dir = Path.of(name);
+        return Files.isDirectory(dir) ? dir : Path.of(name + ".zip");
+    }
+
+    /**
+     * Reads the pages of a folder or zip file, if it exists.
+     *
+     * @param prefix prefix of the names of the pages, by path relative to the folder
+     */
+    static void read(Path output, String prefix, Map<String, String> pages) throws IOException {
+        if (Files.isDirectory(output)) {
+            try (Stream<Path> files = Files.walk(output)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".adoc")).toList()) {
+                    String name = output.relativize(file).toString().replace('\\', '/');
+                    pages.put(prefix + name, Files.readString(file, StandardCharsets.UTF_8));
+                }
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        } else if (Files.isRegularFile(output)) {
+            try (ZipFile zip = new ZipFile(output.toFile(), StandardCharsets.UTF_8)) {
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (entry.getName().endsWith(".adoc")) {
+                        pages.put(
+                                prefix + entry.getName(),
+                                new String(zip.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the pages on several threads.
+     *
+     * @param pages the content of the pages, by name
+     */
+    static List<String> check(Map<String, String> pages, int threads) throws InterruptedException {
+        Set<String> params = new HashSet<>();
+        for (String name : pages.keySet()) {
+            if (name.startsWith(ASCII + "params/")) {
+                params.add(name.substring((ASCII + "params/").length(), name.length() - ".adoc".length()));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (Map.Entry<String, String> page : pages.entrySet()) {
+                futures.add(executor.submit(() -> check(page.getKey(), page.getValue(), params)));
+            }
+            List<String> problems = new ArrayList<>();
+            for (Future<List<String>> future : futures) {
+                problems.addAll(future.get());
+            }
+            return problems;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Checking the pages failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks a page.
+     *
+     * @param params the names of the separate pages of the parameter classes
+     * @return the problems found in the page
+     */
+    static List<String> check(String name, String content, Set<String> params) {
+        List<String> problems = new ArrayList<>();
+        int titleEnd = content.indexOf("\"\n---\n", FRONT_MATTER.length());
+        if (!content.startsWith(FRONT_MATTER)
+                || titleEnd < 0
+                || titleEnd == FRONT_MATTER.length()
+                || content.substring(FRONT_MATTER.length(), titleEnd).contains("\n")) {
+            problems.add(name + ": no front matter with a title");
+        }
+        int passthroughs = 0;
+        int opened = 0;
+        int closed = 0;
+        for (String line : content.lines().toList()) {
+            if (line.equals("++++")) {
+                passthroughs++;
+            }
+            opened += occurrences(line, "<li>") + occurrences(line, "<li ");
+            closed += occurrences(line, "</li>");
+        }
+        if (passthroughs % 2 != 0) {
+            problems.add(name + ": " + passthroughs + " ++++ delimiters, a block is not closed");
+        }
+        if (opened != closed) {
+            problems.add(name + ": " + opened + " <li> for " + closed + " </li>");
+        }
+        for (int start = content.indexOf(PARAMS_LINK); start >= 0; start = content.indexOf(PARAMS_LINK, start + 1)) {
+            int urlStart = start + PARAMS_LINK.length();
+            int end = content.indexOf('"', urlStart);
+            String url = end < 0 ? content.substring(urlStart) : content.substring(urlStart, end);
+            if (!params.contains(url)) {
+                problems.add(name + ": broken link to params/" + url);
+            }
+        }
+        Matcher unsanitized = UNSANITIZED.matcher(content);
+        if (unsanitized.find()) {
+            problems.add(name + ": unsanitized HTML " + unsanitized.group());
+        }
+        return problems;
+    }
+
+    private static int occurrences(String line, String tag) {
+        int count = 0;
+        for (int i = line.indexOf(tag); i >= 0; i = line.indexOf(tag, i + tag.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param metrics report of the run, if any, to take the time of its phases from
+     * @return the size of each page and the time of each phase
+     */
+    static JSONObject baseline(Map<String, String> pages, @CheckForNull Path metrics) throws IOException {
+        JSONObject sizes = new JSONObject();
+        for (Map.Entry<String, String> page : pages.entrySet()) {
+            sizes.put(page.getKey(), page.getValue().getBytes(StandardCharsets.UTF_8).length);
+        }
+        JSONObject phases = new JSONObject();
+        if (metrics != null && Files.isRegularFile(metrics)) {
+            JSONObject report = new JSONObject(Files.readString(metrics, StandardCharsets.UTF_8));
+            JSONArray entries = report.optJSONArray("phases");
+            for (int i = 0; entries != null && i < entries.length(); i++) {
+                JSONObject phase = entries.getJSONObject(i);
+                String name = phase.getString("name");
+                phases.put(name, phases.optLong(name, 0) + phase.getLong("millis"));
+            }
+        }
+        return new JSONObject().put("version", VERSION).put("pages", sizes).put("phases", phases);
+    }
+
+    /**
+     * Compares the pages and phases of a run to the baseline: a page smaller than {@code 1 - sizeThreshold} times its
+     * baseline size, or a phase slower than {@code 1 + timeThreshold} times its baseline time, is a problem.
+     * <p>
+     * Pages of plugins leaving the update center are only logged as removed, and the pages of the parameter classes
+     * are not compared, since which classes get their own page, and what is left in the pages they leave, changes from
+     * one run to the next.
+     */
+    static List<String> compare(JSONObject baseline, JSONObject current, double sizeThreshold, double timeThreshold) {
+        List<String> problems = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        JSONObject baselinePages = baseline.getJSONObject("pages");
+        JSONObject currentPages = current.getJSONObject("pages");
+        for (String name : new TreeSet<>(baselinePages.keySet())) {
+            long before = baselinePages.getLong(name);
+            if (!currentPages.has(name)) {
+                removed.add(name);
+            } else if (!name.startsWith(ASCII + "params/")
+                    && currentPages.getLong(name) < before * (1 - sizeThreshold)) {
+                problems.add(name + ": " + currentPages.getLong(name) + " bytes, had " + before);
+            }
+        }
+        if (!removed.isEmpty()) {
+            LOG.info(removed.size() + " pages of the baseline removed: "
+                    + removed.subList(0, Math.min(MAX_LISTED, removed.size())));
+        }
+        JSONObject baselinePhases = baseline.getJSONObject("phases");
+        JSONObject currentPhases = current.getJSONObject("phases");
+        for (String name : new TreeSet<>(currentPhases.keySet())) {
+            long before = baselinePhases.optLong(name, -1);
+            long millis = currentPhases.getLong(name);
+            if (before >= 0 && millis >= MIN_COMPARED_MILLIS && millis > before * (1 + timeThreshold)) {
+                problems.add("phase " + name + ": " + millis + " ms, took " + before + " ms");
+            }
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,173 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Pages of a run spilled to a temporary folder as they are rendered, by path relative to the root of the output, and
+ * written as a zip archive once they are all processed, so that the pages of a run are not all held in memory.
+ * <p>
+ * Entries are written sorted by name, with a fixed timestamp, so that the same pages always give the same archive
+ * whatever the number of threads rendering them. Pages are compressed with the fastest level, as {@code zip -1} did.
+ * Closing the archive deletes the temporary folder.
+ */
+final class PageArchive implements Closeable {
+    /**
+     * Timestamp of all entries, the first day of the DOS date range used by zip files offset by a month, as some
+     * tools read the first day as no date at all.
+     */
+    static final LocalDateTime TIMESTAMP = LocalDateTime.of(1980, 2, 1, 0, 0);
+
+    /** Size of each page, in bytes, sorted by name. */
+    private final Map<String, Long> pages = new ConcurrentSkipListMap<>();
+
+    @CheckForNull
+    private Path spill;
+
+    private synchronized Path file(String name) throws IOException {
+        if (spill == null) {
+            spill = Files.createTempDirectory("pages");
+        }
+        Path file = spill.resolve(name);
+        Files.createDirectories(file.getParent());
+        return file;
+    }
+
+    /**
+     * Adds or replaces a page.
+     *
+     * @param name the path of the page, relative to the root of the archive, separated by {@code /}
+     * @return the size of the page, in bytes
+     */
+    long put(String name, String content) throws IOException {
+        return put(name, writer -> writer.write(content));
+    }
+
+    /**
+     * Adds or replaces a page, as it is generated.
+     *
+     * @return the size of the page, in bytes
+     */
+    long put(String name, PageChanges.Content content) throws IOException {
+        Path file = file(name);
+        try (Writer writer =
+                new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))) {
+            content.writeTo(writer);
+        }
+        long size = Files.size(file);
+        pages.put(name, size);
+        return size;
+    }
+
+    @CheckForNull
+    String get(String name) throws IOException {
+        return pages.containsKey(name) ? Files.readString(file(name), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * @return the names of the pages at the root of the archive, sorted
+     */
+    List<String> getRootNames() {
+        List<String> names = new ArrayList<>();
+        for (String name : pages.keySet()) {
+            if (name.indexOf('/') < 0) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the total size of the pages, in bytes
+     */
+    long size() {
+        long size = 0;
+        for (long bytes : pages.values()) {
+            size += bytes;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the pages to a zip archive, replacing it if it exists. The archive is written next to its destination
+     * first, so that an interrupted run leaves the previous archive in place.
+     *
+     * @return the size of the archive, in bytes
+     */
+    long write(Path zip) throws IOException {
+        Path absolute = zip.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                write(out);
+            }
+            // an archive of the same pages is kept as it is, with its date
+            if (!Files.isRegularFile(absolute) || Files.mismatch(tmp, absolute) != -1) {
+                Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return Files.size(absolute);
+    }
+
+    void write(OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        zip.setLevel(Deflater.BEST_SPEED);
+        Set<String> folders = new HashSet<>();
+        for (String name : pages.keySet()) {
+            for (int slash = name.indexOf('/'); slash >= 0; slash = name.indexOf('/', slash + 1)) {
+                String folder = name.substring(0, slash + 1);
+                if (folders.add(folder)) {
+                    zip.putNextEntry(entry(folder));
+                    zip.closeEntry();
+                }
+            }
+            zip.putNextEntry(entry(name));
+            Files.copy(file(name), zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private static ZipEntry entry(String name) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTimeLocal(TIMESTAMP);
+        return entry;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill != null) {
+            try (Stream<Path> files = Files.walk(spill)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+            spill = null;
+        }
+        pages.clear();
+    }
+}
@@ -0,0 +1,199 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Pages of an output folder as they were before a run, to report which pages the run changed.
+ * <p>
+ * Pages are only written when their content changes, so that the pages left unchanged keep their date and publishing
+ * them again is cheap. The plugin pages are written once rendered, and rewritten by the separation of the parameter
+ * classes: a page ending with the content it had before the run gets its date back once the run is done.
+ * <p>
+ * The scan only records the size and date of the pages. A page is hashed when it is first replaced during the run,
+ * and again at the end of the run, so that the pages the run leaves alone are never read.
+ */
+final class PageChanges {
+    private record Page(long size, FileTime modified) {}
+
+    /**
+     * Writes the content of a page.
+     */
+    interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Folders scanned whose run is not finished, by absolute path.
+     */
+    private static final Map<Path, PageChanges> SCANNED = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final Map<String, Page> before;
+    /**
+     * Hashes of the content the pages had before the run replaced them.
+     */
+    private final Map<String, String> replaced = new ConcurrentHashMap<>();
+
+    private PageChanges(Path dir, Map<String, Page> before) {
+        this.dir = dir;
+        this.before = before;
+    }
+
+    /**
+     * Records the pages of a folder and its subfolders.
+     */
+    static PageChanges scan(Path dir) throws IOException {
+        Map<String, Page> pages = new HashMap<>();
+        for (Path file : list(dir)) {
+            pages.put(name(dir, file), new Page(Files.size(file), Files.getLastModifiedTime(file)));
+        }
+        PageChanges changes = new PageChanges(dir, pages);
+        SCANNED.put(dir.toAbsolutePath().normalize(), changes);
+        return changes;
+    }
+
+    /**
+     * Hashes the content of a page about to be replaced, if it is the first time the run replaces it.
+     */
+    private static void replacing(Path page) throws IOException {
+        Path file = page.toAbsolutePath().normalize();
+        for (Map.Entry<Path, PageChanges> scanned : SCANNED.entrySet()) {
+            if (file.startsWith(scanned.getKey())) {
+                PageChanges changes = scanned.getValue();
+                String name = name(scanned.getKey(), file);
+                if (changes.before.containsKey(name) && !changes.replaced.containsKey(name)) {
+                    changes.replaced.put(name, RegenerationManifest.hash(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a page, unless it already has this content.
+     *
+     * @return whether the page was written
+     */
+    static boolean write(Path page, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(page)
+                && Files.size(page) == bytes.length
+                && Arrays.equals(Files.readAllBytes(page), bytes)) {
+            return false;
+        }
+        if (Files.isRegularFile(page)) {
+            replacing(page);
+        }
+        Files.write(page, bytes);
+        return true;
+    }
+
+    /**
+     * Writes a page as it is generated to a temporary file next to it, which replaces the page unless it has the
+     * same content.
+     *
+     * @return whether the page was written
+     */
+    static boolean write(Path page, Content content) throws IOException {
+        Path tmp = page.resolveSibling(page.getFileName() + ".tmp");
+        try {
+            try (Writer writer =
+                    new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8))) {
+                content.writeTo(writer);
+            }
+            if (Files.isRegularFile(page)) {
+                if (Files.mismatch(tmp, page) == -1) {
+                    return false;
+                }
+                replacing(page);
+            }
+            Files.move(tmp, page, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Gives their date back to the pages rewritten with the content they had, and lists the pages changed, added and
+     * removed since the scan, by path relative to the folder.
+     */
+    JSONObject finish() throws IOException {
+        SCANNED.remove(dir.toAbsolutePath().normalize(), this);
+        Map<String, Page> remaining = new TreeMap<>(before);
+        List<String> changed = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        int unchanged = 0;
+        for (Path file : list(dir)) {
+            String name = name(dir, file);
+            Page page = remaining.remove(name);
+            String sha256 = replaced.get(name);
+            if (page == null) {
+                added.add(name);
+            } else if (sha256 == null
+                    ? page.size() == Files.size(file) && page.modified().equals(Files.getLastModifiedTime(file))
+                    : sha256.equals(RegenerationManifest.hash(file))) {
+                if (!page.modified().equals(Files.getLastModifiedTime(file))) {
+                    Files.setLastModifiedTime(file, page.modified());
+                }
+                unchanged++;
+            } else {
+                changed.add(name);
+            }
+        }
+        return new JSONObject()
+                .put("unchanged", unchanged)
+                .put("changed", new JSONArray(changed))
+                .put("added", new JSONArray(added))
+                .put("removed", new JSONArray(remaining.keySet()));
+    }
+
+    /**
+     * @return the pages of a folder and its subfolders, sorted
+     */
+    private static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".adoc"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static String name(Path dir, Path file) {
+        return dir.relativize(file).toString().replace('\\', '/');
+    }
+
+    /**
+     * @return a summary of the changes listed by {@link #finish()}
+     */
+    static String summary(JSONObject changes) {
+        return changes.getJSONArray("changed").length() + " pages changed " + changes.getJSONArray("changed")
+                + ", " + changes.getJSONArray("added").length() + " added, "
+                + changes.getJSONArray("removed").length() + " removed " + changes.getJSONArray("removed")
+                + ", " + changes.getInt("unchanged") + " unchanged";
+    }
+}
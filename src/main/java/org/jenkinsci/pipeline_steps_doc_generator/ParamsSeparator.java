@@ -0,0 +1,251 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * Separates the documentation of configured parameter classes out of generated AsciiDoc pages.
+ * Each page is handled in a single pass: the configured class names present in the page are
+ * located at once, separated in configuration order and the page is rewritten at most once.
+ */
+class ParamsSeparator {
+    private static final Logger LOG = Logger.getLogger(ParamsSeparator.class.getName());
+    private static final String MARKER_START = "<li><code>";
+    private static final String MARKER_END = "</code><div>";
+
+    private final Extracts extracts;
+    private final int linesThreshold;
+    /** Configured class names, in configuration order. */
+    private final List<String> classNames = new ArrayList<>();
+    /** Configured class names, mapped to their position in the configuration. */
+    private final Map<String, Integer> classOrder = new HashMap<>();
+    /** Class names which can not be detected by {@link #findClasses(List)} and are always tried. */
+    private final List<String> unindexed = new ArrayList<>();
+    /** Position in the configuration of the class whose documentation was last written, by file name. */
+    private final Map<String, Integer> writtenBy = new HashMap<>();
+    /** Documentation last written by this separator, by file name. */
+    private final Map<String, String> written = new HashMap<>();
+    /** Position in the configuration of the classes separated out of the last page processed, by file name. */
+    private final Map<String, Integer> pageExtracts = new HashMap<>();
+    /** Classes left in place somewhere for lacking documentation, warned about once. */
+    private final Set<String> tooShort = new TreeSet<>();
+
+    /** Documentation of a class separated out of a page, and the number of lines of its first occurrence. */
+    private record Separated(String extract, int lines) {}
+
+    /**
+     * Receives the separated documentation of the classes.
+     */
+    interface Extracts {
+        /**
+         * @param fileName the name of the separate page, without its {@code params/} folder and extension
+         */
+        void write(String fileName, String extract) throws IOException;
+    }
+
+    ParamsSeparator(String allAscii, List<String> configured, int linesThreshold) {
+        this(
+                (fileName, extract) -> PageChanges.write(Path.of(allAscii + "/params/" + fileName + ".adoc"), extract),
+                configured,
+                linesThreshold);
+    }
+
+    ParamsSeparator(Extracts extracts, List<String> configured, int linesThreshold) {
+        this.extracts = extracts;
+        this.linesThreshold = linesThreshold;
+        for (String className : configured) {
+            if (classOrder.putIfAbsent(className, classNames.size()) == null) {
+                classNames.add(className);
+                if (className.contains("<")) {
+                    unindexed.add(className);
+                }
+            }
+        }
+    }
+
+    static String url(String className) {
+        return className.toLowerCase().replaceAll("class", "").replaceAll("[^a-zA-Z0-9]", "");
+    }
+
+    static String header(String className) {
+        return "---\nlayout: pipelinesteps\ntitle: \"" + className + "\"\n---\n" + "== " + className + "\n"
+                + "\n++++\n";
+    }
+
+    static String join(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append(line).append("\n");
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Separates all configured classes out of a page. A class whose documentation has fewer than
+     * {@code linesThreshold} lines once the classes nested in it are separated is left in place, with a warning.
+     *
+     * @param content the page content
+     * @return the rewritten page, or {@code null} if the page does not need to be rewritten
+     */
+    String processPage(String content) throws IOException {
+        pageExtracts.clear();
+        List<String> lines = content.lines().toList();
+        for (String className : findClasses(lines)) {
+            List<String> remaining = new ArrayList<>(lines.size());
+            Separated separated = separate(lines, className, remaining);
+            if (separated == null) {
+                continue;
+            }
+            if (separated.lines() < linesThreshold) {
+                if (tooShort.add(className)) {
+                    LOG.warning(className + " has " + separated.lines() + " lines, fewer than " + linesThreshold
+                            + ", and is left in place");
+                }
+                continue;
+            }
+            writeExtract(className, separated.extract());
+            lines = remaining;
+        }
+        String processed = join(lines);
+        return processed.equals(content) ? null : processed;
+    }
+
+    /**
+     * Finds the configured classes documented in a page, by matching all class names at once against the
+     * {@code <li><code>...</code><div>} markers.
+     *
+     * @return the class names found, in configuration order
+     */
+    private List<String> findClasses(List<String> lines) {
+        TreeSet<Integer> found = new TreeSet<>();
+        for (String className : unindexed) {
+            found.add(classOrder.get(className));
+        }
+        for (String line : lines) {
+            int start = line.indexOf(MARKER_START);
+            while (start >= 0) {
+                int nameStart = start + MARKER_START.length();
+                int end = line.indexOf(MARKER_END, nameStart);
+                if (end < 0) {
+                    break;
+                }
+                Integer position = classOrder.get(line.substring(nameStart, end));
+                if (position != null) {
+                    found.add(position);
+                }
+                start = line.indexOf(MARKER_START, nameStart);
+            }
+        }
+        List<String> result = new ArrayList<>(found.size());
+        for (Integer position : found) {
+            result.add(classNames.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the separated documentation of a class, unless this separator already wrote the same content.
+     * When several configured classes share a file name, the class configured last wins.
+     */
+    private void writeExtract(String className, String extract) throws IOException {
+        String fileName = url(className);
+        int position = classOrder.get(className);
+        Integer previous = writtenBy.get(fileName);
+        if (previous != null
+                && (previous > position || (previous == position && extract.equals(written.get(fileName))))) {
+            return;
+        }
+        extracts.write(fileName, extract);
+        writtenBy.put(fileName, position);
+        written.put(fileName, extract);
+        pageExtracts.put(fileName, position);
+    }
+
+    /**
+     * @return the separate pages written out of the last page processed, by file name, with the position in the
+     *     configuration of their class
+     */
+    Map<String, Integer> getPageExtracts() {
+        return new HashMap<>(pageExtracts);
+    }
+
+    /**
+     * Takes into account a separate page written out of a page processed by a previous run, so that a class
+     * configured before it does not replace it.
+     */
+    void restore(String fileName, int position) {
+        writtenBy.merge(fileName, position, Math::max);
+    }
+
+    /**
+     * Replaces every occurrence of the documentation of a class by a link to its separate page.
+     *
+     * @param lines the page content
+     * @param remaining receives the page content minus the documentation of the class
+     * @return the separate page built from the first occurrence, or {@code null} if the class is not documented
+     * @throws RuntimeException if the first occurrence has fewer lines than {@code linesThreshold}
+     */
+    static String separate(List<String> lines, String className, int linesThreshold, List<String> remaining) {
+        Separated separated = separate(lines, className, remaining);
+        if (separated == null) {
+            return null;
+        }
+        if (separated.lines() < linesThreshold) {
+            throw new RuntimeException(
+                    "Invalid Configuration, " + className + " does not have sufficient documentation to be separated!");
+        }
+        return separated.extract();
+    }
+
+    /**
+     * @return the separate page and the number of lines of the first occurrence, or {@code null} if the class is
+     *     not documented
+     */
+    private static Separated separate(List<String> lines, String className, List<String> remaining) {
+        String marker = MARKER_START + className + MARKER_END;
+        String url = url(className);
+        StringBuilder newAdoc = new StringBuilder(header(className));
+        Separated separated = null;
+        int counter = 0; // keeps a count of opening and closing li tags to mark the end of a section
+        boolean flag = false;
+        int blockLines = 0;
+        for (String line : lines) {
+            if (!flag && line.contains(marker)) {
+                flag = true;
+                remaining.add("<li><span><a href=\"/doc/pipeline/steps/params/" + url + "\"><code>" + className
+                        + "</code></a></span></li>");
+            } else if (!flag) {
+                remaining.add(line);
+            }
+            if (flag) {
+                counter += occurrences(line, "<li>") - occurrences(line, "</li>");
+                blockLines++;
+                if (newAdoc != null) newAdoc.append(line).append("\n");
+                if (counter == 0) {
+                    if (newAdoc != null) {
+                        separated = new Separated(newAdoc.append("\n\n++++").toString(), blockLines);
+                        newAdoc = null;
+                    }
+                    blockLines = 0;
+                    flag = false;
+                }
+            }
+        }
+        return separated;
+    }
+
+    private static int occurrences(String line, String tag) {
+        int count = 0;
+        for (int i = line.indexOf(tag); i >= 0; i = line.indexOf(tag, i + tag.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -3,6 +3,8 @@ package org.jenkinsci.pipeline_steps_doc_generator;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.sun.net.httpserver.HttpServer;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.MockJenkins;
 import hudson.PluginManager;
@@ -16,16 +18,30 @@ import hudson.security.ACLContext;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -36,6 +52,7 @@ import org.jenkinsci.plugins.structs.describable.DescribableModel;
 import org.jenkinsci.plugins.structs.describable.DescribableParameter;
 import org.jenkinsci.plugins.structs.describable.HeterogeneousObjectType;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.jvnet.hudson.reactor.Reactor;
 import org.jvnet.hudson.reactor.ReactorException;
@@ -49,6 +66,8 @@ import org.kohsuke.args4j.Option;
  */
 public class PipelineStepExtractor {
     private static final Logger LOG = Logger.getLogger(PipelineStepExtractor.class.getName());
+    /** Journal resumed by {@code -resume} without {@code -checkpoint}. */
+    private static final String CHECKPOINT = "checkpoint.jsonl";
 
     static {
         System.setProperty("java.util.logging.SimpleFormatter.format", "[%4$-7s] %5$s %6$s%n");
@@ -69,6 +88,108 @@ public class PipelineStepExtractor {
             usage = "Full path of the location to save the Declarative asciidoc. Defaults to ./declarative")
     public String declarativeDest = null;
 
+    @Option(
+            name = "-zip",
+            usage = "Write the steps and the Declarative asciidoc to the zip files given by -asciiDest and"
+                    + " -declarativeDest, defaulting to ./allAscii.zip and ./declarative.zip, instead of folders.")
+    public boolean zip = false;
+
+    @Option(
+            name = "-threads",
+            usage = "Number of plugin pages rendered concurrently.  Defaults to 1, rendering one page at a time.")
+    public int threads = 1;
+
+    @Option(
+            name = "-updateCenter",
+            usage = "URL or path of the update center JSON listing deprecated plugins.  Defaults to "
+                    + DeprecatedPlugins.UPDATE_CENTER)
+    public String updateCenter = DeprecatedPlugins.UPDATE_CENTER;
+
+    @Option(
+            name = "-deprecationsCache",
+            usage = "File listing the ids of deprecated plugins, one per line.  Read instead of the update center"
+                    + " while it is younger than -deprecationsCacheDays, written from the update center otherwise.")
+    public String deprecationsCache = null;
+
+    @Option(
+            name = "-deprecationsCacheDays",
+            usage = "Days after which the -deprecationsCache file is refreshed from the update center, or still read"
+                    + " if the update center cannot be.  Defaults to 1.")
+    public int deprecationsCacheDays = 1;
+
+    @Option(
+            name = "-incremental",
+            usage = "Manifest file of the previous run into the same -asciiDest.  Only the plugin pages whose"
+                    + " plugins or dependencies changed since are rendered again.  Written for the next run.")
+    public String incremental = null;
+
+    @Option(
+            name = "-modelDest",
+            usage = "File to save the model extracted from the plugins to, gzipped if it ends with .gz.  The pages"
+                    + " can then be rendered again from it with -modelSource.")
+    public String modelDest = null;
+
+    @Option(
+            name = "-modelSource",
+            usage = "Model file saved by -modelDest to render the pages from, instead of loading the plugins.")
+    public String modelSource = null;
+
+    @Option(
+            name = "-fullBoot",
+            usage = "Boot every plugin of the plugin folder.  By default only the plugins contributing descriptors"
+                    + " and their dependencies are booted, linked from a prefiltered/plugins folder next to it.")
+    public boolean fullBoot = false;
+
+    @Option(
+            name = "-shard",
+            usage = "Extract only the plugins of shard i out of N, given as i/N with i from 0, to the model file"
+                    + " given by -modelDest.  The models of all shards are then rendered together by -merge.")
+    public String shard = null;
+
+    @Option(
+            name = "-merge",
+            usage = "Comma-separated model files saved by -shard runs, rendered as a single run would have.")
+    public String merge = null;
+
+    @Option(
+            name = "-metrics",
+            usage = "JSON file to report the time, allocations and output size of each phase, plugin, descriptor and"
+                    + " directive of the run to.")
+    public String metricsReport = null;
+
+    @Option(
+            name = "-descriptorTimeout",
+            usage = "Seconds given to the extraction of each descriptor, documented by a placeholder if it takes"
+                    + " longer.  A descriptor given up keeps running alongside the next ones.  Defaults to 0, for no"
+                    + " limit.")
+    public int descriptorTimeout = 0;
+
+    @Option(
+            name = "-repeatedLines",
+            usage = "Lines that the repetitions of a parameter class documented identically on several pages must add"
+                    + " up to for the class to be separated to its own page, in addition to those of config.txt."
+                    + "  Defaults to 0, to only separate those of config.txt.")
+    public long repeatedLines = ProcessAsciiDoc.REPEATED_LINES;
+
+    @Option(
+            name = "-checkpoint",
+            usage = "Journal of the pages written by the run, recorded as they are written, to resume the run with"
+                    + " -resume if it is killed halfway.  No journal is written by default, or ./checkpoint.jsonl with"
+                    + " -resume")
+    public String checkpoint = null;
+
+    @Option(
+            name = "-resume",
+            usage = "Resume the run recorded in the -checkpoint journal, ./checkpoint.jsonl by default: the pages it"
+                    + " completed are kept, unless the generator or the plugins changed since.")
+    public boolean resume = false;
+
+    @Option(
+            name = "-serve",
+            usage = "Port of the local HTTP endpoint to serve the pages on, rendered on request from the plugins loaded"
+                    + " once, or from the model read, until stopped by POST /stop.  Nothing is written otherwise.")
+    public int serve = 0;
+
     public static void main(String[] args) {
         PipelineStepExtractor pse = new PipelineStepExtractor();
         try {
@@ -80,25 +201,222 @@ public class PipelineStepExtractor {
                     "There was an error with parsing the commands, defaulting to the home directory.",
                     ex);
         }
+        pse.journal = pse.openJournal();
+        int status = 0;
         try {
-            Map<String, Map<String, List<QuasiDescriptor>>> steps = pse.findSteps();
-            pse.generateAscii(steps, pse.pluginManager);
-            pse.generateDeclarativeSteps();
+            if (pse.merge != null || pse.modelSource != null) {
+                ModelSnapshot model = pse.readModel();
+                if (pse.serve > 0) {
+                    pse.serve(pse.modelPages(model), Map.of());
+                } else {
+                    pse.generateAscii(model);
+                    pse.generateDeclarativeSteps(model);
+                }
+            } else {
+                if (pse.shard != null && pse.modelDest == null) {
+                    throw new IllegalArgumentException("-shard needs -modelDest, rendered by -merge");
+                }
+                pse.extractor.setTimeout(Duration.ofSeconds(pse.descriptorTimeout));
+                pse.loadDeprecatedPlugins(); // while plugins are loading
+                Map<String, Map<String, List<QuasiDescriptor>>> steps = pse.findSteps();
+                if (pse.modelDest != null) {
+                    ModelSnapshot model = pse.extractModel(steps);
+                    model.write(Path.of(pse.modelDest));
+                    LOG.info("Saved the model to " + pse.modelDest);
+                    if (pse.shard == null) {
+                        pse.generateAscii(model);
+                        pse.generateDeclarativeSteps(model);
+                    }
+                } else if (pse.serve > 0) {
+                    pse.serve(pse.loadedPages(steps), pse.getComponents().getClassesToPlugin());
+                } else {
+                    pse.generateAscii(steps, pse.pluginManager);
+                    pse.generateDeclarativeSteps();
+                }
+            }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, "Error in finding all the steps", ex);
+            status = 1;
+        }
+        pse.closeJournal();
+        LOG.info(ToAsciiDoc.getHelpCache().toString());
+        LOG.info(ToAsciiDoc.getFailures().toString());
+        LOG.info(pse.metrics.toString());
+        if (pse.metricsReport != null) {
+            try {
+                pse.metrics.write(Path.of(pse.metricsReport));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not write " + pse.metricsReport, ex);
+            }
         }
         LOG.info("CONVERSION COMPLETE!");
-        System.exit(0); // otherwise environment hangs around
+        System.exit(status); // otherwise environment hangs around
     }
 
     @SuppressFBWarnings(value = "PA_PUBLIC_PRIMITIVE_ATTRIBUTE", justification = "Retain API compatibility")
     public HyperLocalPluginManager pluginManager;
 
+    /**
+     * Nested documentation shared by all the pages of the run.
+     */
+    private final FragmentCache fragments = new FragmentCache();
+
+    /**
+     * Models shared by all the pages of the run.
+     */
+    private final ModelExtractor extractor;
+
+    /**
+     * Measures of the run.
+     */
+    private final RunMetrics metrics = new RunMetrics();
+
+    /**
+     * Pages written by the run, and by the run it resumes, if they are written to folders.
+     */
+    @CheckForNull
+    private CheckpointJournal journal;
+
+    public PipelineStepExtractor() {
+        extractor = new ModelExtractor(metrics);
+    }
+
+    private CompletableFuture<Set<String>> deprecatedPlugins;
+
+    /**
+     * Components of the loaded plugins, shared by the steps and the Declarative directives.
+     */
+    private ComponentRegistry components;
+
+    /**
+     * Starts loading the plugins deprecated in the update center, in the background.
+     */
+    public void loadDeprecatedPlugins() {
+        deprecatedPlugins = DeprecatedPlugins.loadAsync(
+                updateCenter,
+                deprecationsCache == null ? null : Path.of(deprecationsCache),
+                Duration.ofDays(deprecationsCacheDays));
+    }
+
+    /**
+     * Reads the model given by {@code -modelSource}, or merges those given by {@code -merge}.
+     */
+    private ModelSnapshot readModel() throws IOException {
+        if (merge == null) {
+            return ModelSnapshot.read(Path.of(modelSource));
+        }
+        List<ModelSnapshot> shards = new ArrayList<>();
+        for (String file : merge.split(",")) {
+            shards.add(ModelSnapshot.read(Path.of(file.trim())));
+        }
+        ModelSnapshot model = ModelSnapshot.merge(shards);
+        LOG.info("Merged the models of " + shards.size() + " shards");
+        return model;
+    }
+
+    /**
+     * Serves the pages on the {@code -serve} port until stopped.
+     */
+    private void serve(DocServer.Source source, Map<String, String> classesToPlugin)
+            throws IOException, InterruptedException {
+        DocServer server = new DocServer(source, classesToPlugin);
+        HttpServer http = server.start(serve);
+        try {
+            server.await();
+        } finally {
+            http.stop(0);
+        }
+    }
+
+    /**
+     * Pages extracted on request from the loaded plugins, whose classes stay as booted: a plugin reported changed
+     * is rendered again, but changes to its archive need a restart.
+     */
+    private DocServer.Source loadedPages(Map<String, Map<String, List<QuasiDescriptor>>> steps) {
+        Set<String> deprecatedPlugins = getDeprecatedPlugins();
+        return new DocServer.Source() {
+            private List<ModelSnapshot.Directive> directives;
+
+            @Override
+            public Collection<String> plugins() {
+                return steps.keySet();
+            }
+
+            @Override
+            public ModelSnapshot.Plugin plugin(String name) {
+                Map<String, List<QuasiDescriptor>> byPlugin = steps.get(name);
+                return byPlugin == null
+                        ? null
+                        : extractPlugin(name, byPlugin, pluginManager, deprecatedPlugins.contains(name));
+            }
+
+            @Override
+            public synchronized List<ModelSnapshot.Directive> directives() {
+                if (directives == null) {
+                    directives = new DeclarativeSteps().extractDirectives(extractor, getComponents());
+                }
+                return directives;
+            }
+
+            @Override
+            public void changed(String plugin) {
+                LOG.info("The classes of " + plugin + " stay as loaded, restart to load a changed archive");
+            }
+
+            @Override
+            public void generate() {
+                generateAscii(steps, pluginManager);
+                generateDeclarativeSteps();
+            }
+        };
+    }
+
+    /**
+     * Pages of a model, read again from its files when a plugin is reported changed.
+     */
+    private DocServer.Source modelPages(ModelSnapshot initial) {
+        return new DocServer.Source() {
+            private ModelSnapshot model = initial;
+
+            @Override
+            public Collection<String> plugins() {
+                return model.plugins.stream().map(ModelSnapshot.Plugin::name).toList();
+            }
+
+            @Override
+            public ModelSnapshot.Plugin plugin(String name) {
+                return model.plugins.stream()
+                        .filter(page -> page.name().equals(name))
+                        .findFirst()
+                        .orElse(null);
+            }
+
+            @Override
+            public List<ModelSnapshot.Directive> directives() {
+                return model.directives;
+            }
+
+            @Override
+            public void changed(String plugin) throws IOException {
+                model = readModel();
+            }
+
+            @Override
+            public void generate() {
+                generateAscii(model);
+                generateDeclarativeSteps(model);
+            }
+        };
+    }
+
     public Map<String, Map<String, List<QuasiDescriptor>>> findSteps() {
         Map<String, Map<String, List<QuasiDescriptor>>> completeListing = new HashMap<>();
         try {
             // setup
-            if (homeDir == null) {
+            String prefiltered = fullBoot ? null : prefilterPlugins();
+            if (prefiltered != null) {
+                pluginManager = new HyperLocalPluginManager(prefiltered, false);
+            } else if (homeDir == null) {
                 pluginManager = new HyperLocalPluginManager(false);
             } else {
                 pluginManager = new HyperLocalPluginManager(homeDir, false);
@@ -114,27 +432,21 @@ public class PipelineStepExtractor {
             jenkinsHolderField.setAccessible(true);
             jenkinsHolderField.set(null, mockJenkinsHolder);
 
-            InitStrategy initStrategy = new InitStrategy();
-            executeReactor(initStrategy, pluginManager.diagramPlugins(initStrategy));
-            List<StepDescriptor> steps = pluginManager.getPluginStrategy().findComponents(StepDescriptor.class);
-
-            // gather current and depricated steps
-            Map<String, List<QuasiDescriptor>> required = processSteps(false, steps);
-            Map<String, List<QuasiDescriptor>> optional = processSteps(true, steps);
-
-            for (String req : required.keySet()) {
-                Map<String, List<QuasiDescriptor>> newList = new HashMap<>();
-                newList.put("Steps", required.get(req));
-                completeListing.put(req, newList);
+            long start = System.nanoTime();
+            try (RunMetrics.Timer timer = metrics.phase("boot")) {
+                InitStrategy initStrategy = new InitStrategy();
+                executeReactor(initStrategy, pluginManager.diagramPlugins(initStrategy));
             }
-            for (String opt : optional.keySet()) {
-                Map<String, List<QuasiDescriptor>> exists = completeListing.get(opt);
-                if (exists == null) {
-                    exists = new HashMap<>();
-                }
-                exists.put("Advanced/Deprecated Steps", optional.get(opt));
-                completeListing.put(opt, exists);
+            LOG.info("Loaded the plugins in " + millisSince(start) + " ms");
+
+            start = System.nanoTime();
+            List<StepDescriptor> steps;
+            try (RunMetrics.Timer timer = metrics.phase("find steps")) {
+                steps = getComponents().find(StepDescriptor.class);
+                completeListing = processSteps(steps);
             }
+            LOG.info("Found " + steps.size() + " steps of " + completeListing.size() + " plugins in "
+                    + millisSince(start) + " ms");
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, "Step generation failed", ex);
         }
@@ -142,19 +454,75 @@ public class PipelineStepExtractor {
         return completeListing;
     }
 
-    private Map<String, List<QuasiDescriptor>> processSteps(boolean optional, List<StepDescriptor> steps) {
-        Map<String, List<QuasiDescriptor>> required = new HashMap<>();
-        for (StepDescriptor d : getStepDescriptors(optional, steps)) {
-            String pluginName = pluginManager.getPluginNameForDescriptor(d);
-            required.computeIfAbsent(pluginName, k -> new ArrayList<>()).add(new QuasiDescriptor(d, null));
+    /**
+     * Stages the plugins worth booting into their own plugin folder.
+     *
+     * @return the root directory of that folder, or {@code null} to boot every plugin
+     */
+    private String prefilterPlugins() {
+        File root = new File(homeDir == null ? System.getProperty("user.dir") : homeDir);
+        File plugins = new File(root, "plugins");
+        if (!plugins.isDirectory()) {
+            return null;
+        }
+        try (RunMetrics.Timer timer = metrics.phase("prefilter")) {
+            long start = System.nanoTime();
+            PluginPrefilter prefilter = PluginPrefilter.scan(plugins);
+            Set<String> selected = prefilter.select(getShard());
+            File prefiltered = new File(root, "prefiltered");
+            prefilter.stage(selected, new File(prefiltered, "plugins"));
+            LOG.info("Booting " + selected.size() + " of " + prefilter.size()
+                    + " plugins, those contributing descriptors and their dependencies, selected in "
+                    + millisSince(start) + " ms");
+            return prefiltered.getPath();
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Cannot prefilter the plugins, booting all of them", ex);
+            return null;
+        }
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Gathers current and deprecated steps into the sections of their plugin pages, in a single pass.
+     * The plugin, delegates and advanced flag of each descriptor are resolved once.
+     */
+    private Map<String, Map<String, List<QuasiDescriptor>>> processSteps(List<StepDescriptor> steps) {
+        TreeSet<StepDescriptor> required = new TreeSet<>(new StepDescriptorComparator());
+        TreeSet<StepDescriptor> advanced = new TreeSet<>(new StepDescriptorComparator());
+        for (StepDescriptor d : steps) {
+            (d.isAdvanced() ? advanced : required).add(d);
+        }
+        Map<Descriptor<?>, String> pluginNames = new HashMap<>();
+        Map<String, Map<String, List<QuasiDescriptor>>> completeListing = new HashMap<>();
+        processSteps(completeListing, "Steps", required, pluginNames);
+        processSteps(completeListing, "Advanced/Deprecated Steps", advanced, pluginNames);
+        return completeListing;
+    }
+
+    private void processSteps(
+            Map<String, Map<String, List<QuasiDescriptor>>> completeListing,
+            String section,
+            Collection<StepDescriptor> steps,
+            Map<Descriptor<?>, String> pluginNames) {
+        for (StepDescriptor d : steps) {
+            String pluginName = pluginNames.computeIfAbsent(d, pluginManager::getPluginNameForDescriptor);
+            completeListing
+                    .computeIfAbsent(pluginName, k -> new LinkedHashMap<>()) // sections in the order processed
+                    .computeIfAbsent(section, k -> new ArrayList<>())
+                    .add(new QuasiDescriptor(d, null));
             getMetaDelegates(d).forEach(delegateDescriptor -> {
-                String nestedPluginName = pluginManager.getPluginNameForDescriptor(delegateDescriptor);
-                required.computeIfAbsent(nestedPluginName, k -> new ArrayList<>())
+                String nestedPluginName =
+                        pluginNames.computeIfAbsent(delegateDescriptor, pluginManager::getPluginNameForDescriptor);
+                completeListing
+                        .computeIfAbsent(nestedPluginName, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(section, k -> new ArrayList<>())
                         .add(new QuasiDescriptor(delegateDescriptor, d));
             }); // TODO currently not handling metasteps with other parameters, either required or (like GenericSCMStep)
             // not
         }
-        return required;
     }
 
     protected static Stream<Descriptor<?>> getMetaDelegates(Descriptor<?> d) {
@@ -215,6 +583,7 @@ public class PipelineStepExtractor {
             @Override
             protected void onInitMilestoneAttained(InitMilestone milestone) {
                 LOG.info("init milestone attained " + milestone);
+                metrics.milestone(milestone.toString());
             }
         }.run(reactor);
     }
@@ -238,52 +607,506 @@ public class PipelineStepExtractor {
         private static final long serialVersionUID = 1L;
     }
 
+    private ComponentRegistry getComponents() {
+        return getComponents(pluginManager);
+    }
+
+    private synchronized ComponentRegistry getComponents(PluginManager pluginManager) {
+        if (components == null || !components.isOf(pluginManager)) {
+            components = new ComponentRegistry(pluginManager);
+        }
+        return components;
+    }
+
+    @CheckForNull
+    private Shard getShard() {
+        return shard == null ? null : Shard.parse(shard);
+    }
+
+    private Set<String> getDeprecatedPlugins() {
+        if (this.deprecatedPlugins == null) {
+            loadDeprecatedPlugins();
+        }
+        return this.deprecatedPlugins.join();
+    }
+
+    /**
+     * Extracts the pages of all plugins and Declarative directives, as needed to render them without the plugins.
+     */
+    public ModelSnapshot extractModel(Map<String, Map<String, List<QuasiDescriptor>>> allSteps) {
+        Set<String> deprecatedPlugins = getDeprecatedPlugins();
+        long start = System.nanoTime();
+        ModelSnapshot model;
+        try (RunMetrics.Timer timer = metrics.phase("extract")) {
+            Shard slice = getShard();
+            List<String> plugins = new ArrayList<>(allSteps.keySet());
+            if (slice != null) {
+                plugins.removeIf(plugin -> !slice.owns(plugin));
+                LOG.info("Extracting " + plugins.size() + " of " + allSteps.size() + " plugins in shard " + slice);
+            }
+            Collections.sort(plugins);
+            List<ModelSnapshot.Plugin> pages = new ArrayList<>();
+            for (String plugin : plugins) {
+                try (RunMetrics.Timer pluginTimer = metrics.plugin(plugin)) {
+                    pages.add(extractPlugin(
+                            plugin, allSteps.get(plugin), pluginManager, deprecatedPlugins.contains(plugin)));
+                }
+            }
+            List<ModelSnapshot.Directive> directives =
+                    new DeclarativeSteps().extractDirectives(extractor, getComponents());
+            if (slice != null) {
+                directives = directives.stream()
+                        .map(directive -> new ModelSnapshot.Directive(
+                                directive.name(),
+                                directive.sections().stream()
+                                        .filter(section -> slice.owns(section.name()))
+                                        .toList()))
+                        .toList();
+            }
+            model = new ModelSnapshot(pages, directives);
+        }
+        LOG.info("Extracted the model in " + millisSince(start) + " ms");
+        return model;
+    }
+
     public void generateAscii(Map<String, Map<String, List<QuasiDescriptor>>> allSteps, PluginManager pluginManager) {
+        Set<String> deprecatedPlugins = getDeprecatedPlugins();
+        generateAscii(
+                allSteps.keySet(),
+                deprecatedPlugins::contains,
+                plugin -> extractPlugin(
+                        plugin, allSteps.get(plugin), pluginManager, deprecatedPlugins.contains(plugin)),
+                pluginManager);
+    }
+
+    /**
+     * Renders the plugin pages of an extracted model.
+     */
+    public void generateAscii(ModelSnapshot model) {
+        Map<String, ModelSnapshot.Plugin> pages = new HashMap<>();
+        for (ModelSnapshot.Plugin page : model.plugins) {
+            pages.put(page.name(), page);
+        }
+        generateAscii(pages.keySet(), plugin -> pages.get(plugin).deprecated(), pages::get, pluginManager);
+    }
+
+    /**
+     * @param pages extracts the page of a plugin, when it has to be rendered
+     * @param pluginManager the loaded plugins, if any
+     */
+    private void generateAscii(
+            Collection<String> pluginNames,
+            Predicate<String> deprecatedPlugins,
+            Function<String, ModelSnapshot.Plugin> pages,
+            @CheckForNull PluginManager pluginManager) {
         File allAscii;
         if (asciiDest != null) {
             allAscii = new File(asciiDest);
         } else {
-            allAscii = new File("allAscii");
+            allAscii = new File(zip ? "allAscii.zip" : "allAscii");
+        }
+
+        PageArchive archive = zip ? new PageArchive() : null;
+        try {
+            PageChanges changes = null;
+            if (archive == null) {
+                allAscii.mkdirs();
+                changes = scanPages(allAscii);
+            }
+            String allAsciiPath = allAscii.getAbsolutePath();
+            List<String> plugins = new ArrayList<>(pluginNames);
+            Collections.sort(plugins);
+            RegenerationManifest manifest = null;
+            if (incremental != null) {
+                if (archive != null) {
+                    LOG.warning("-incremental keeps the pages of the previous run in the -asciiDest folder, not in a"
+                            + " zip file, rendering all pages");
+                } else if (pluginManager == null) {
+                    LOG.warning("-incremental needs the plugins to be loaded, rendering all pages");
+                } else if (plugins.isEmpty()) {
+                    LOG.warning("No steps found, keeping the pages of the previous run and " + incremental);
+                } else {
+                    manifest = loadManifest(pluginManager);
+                }
+            }
+            Map<String, String> classesToPlugin =
+                    pluginManager == null ? Map.of() : getComponents(pluginManager).getClassesToPlugin();
+            try (RunMetrics.Timer timer = metrics.phase("render plugins")) {
+                renderPlugins(plugins, deprecatedPlugins, pages, allAsciiPath, archive, manifest, classesToPlugin);
+            }
+            LOG.info(fragments.toString());
+            if (manifest != null) {
+                for (String removed : manifest.removed()) {
+                    LOG.info("removing " + removed);
+                    new File(allAsciiPath, removed + ".adoc").delete();
+                }
+            }
+            try (RunMetrics.Timer timer = metrics.phase("process asciidoc")) {
+                ProcessAsciiDoc pad = new ProcessAsciiDoc();
+                pad.setRepeatedLines(repeatedLines);
+                if (archive != null) {
+                    try {
+                        pad.processDocs(archive, 100);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Could not process the pages, not writing " + allAscii, ex);
+                    }
+                    timer.output(archive.size());
+                } else {
+                    new File(allAsciiPath + "/params").mkdirs();
+                    pad.processDocs(allAsciiPath, 100, journal);
+                    timer.output(sizeOf(allAscii.toPath()));
+                }
+            }
+            if (archive != null) {
+                writeArchive(archive, allAscii);
+            }
+            if (changes != null) {
+                reportChanges(changes, allAscii);
+            }
+            if (manifest != null) {
+                try {
+                    manifest.save(allAsciiPath);
+                } catch (IOException ex) {
+                    LOG.log(
+                            Level.WARNING,
+                            "Could not write " + incremental + ", the next run will render all pages",
+                            ex);
+                }
+            }
+        } finally {
+            close(archive);
+        }
+    }
+
+    private void renderPlugins(
+            List<String> plugins,
+            Predicate<String> deprecatedPlugins,
+            Function<String, ModelSnapshot.Plugin> pages,
+            String allAsciiPath,
+            @CheckForNull PageArchive archive,
+            @CheckForNull RegenerationManifest manifest,
+            Map<String, String> classesToPlugin) {
+        if (threads > 1) {
+            LOG.info("rendering " + plugins.size() + " plugins with " + threads + " threads");
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (String plugin : plugins) {
+                    boolean isDeprecated = deprecatedPlugins.test(plugin);
+                    RegenerationManifest m = manifest;
+                    futures.add(executor.submit(() -> generatePluginAscii(
+                            plugin, isDeprecated, pages, allAsciiPath, archive, m, classesToPlugin)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering plugins", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Rendering plugins failed", ex.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (String plugin : plugins) {
+                generatePluginAscii(
+                        plugin,
+                        deprecatedPlugins.test(plugin),
+                        pages,
+                        allAsciiPath,
+                        archive,
+                        manifest,
+                        classesToPlugin);
+            }
         }
+    }
 
-        JSONObject deprecatedPlugins = new JSONObject();
+    private static void close(@CheckForNull PageArchive archive) {
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not delete the pages spilled to disk", ex);
+            }
+        }
+    }
+
+    private void writeArchive(PageArchive archive, File zip) {
+        try (RunMetrics.Timer timer = metrics.phase("write " + zip.getName())) {
+            timer.output(archive.write(zip.toPath()));
+            LOG.info("Wrote " + zip);
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Could not write " + zip, ex);
+        }
+    }
+
+    @CheckForNull
+    private static PageChanges scanPages(File dir) {
         try {
-            deprecatedPlugins = new JSONObject(new String(
-                            new URL("https://updates.jenkins.io/current/update-center.actual.json")
-                                    .openStream()
-                                    .readAllBytes(),
-                            StandardCharsets.UTF_8))
-                    .getJSONObject("deprecations");
+            return PageChanges.scan(dir.toPath());
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read the pages of " + dir + ", not reporting which pages change", ex);
+            return null;
+        }
+    }
 
+    private void reportChanges(PageChanges changes, File dir) {
+        try {
+            JSONObject report = changes.finish();
+            metrics.pages(dir.getName(), report);
+            LOG.info(dir.getName() + ": " + PageChanges.summary(report));
         } catch (IOException ex) {
-            LOG.log(Level.WARNING, "Update center could not be read" + ex);
+            LOG.log(Level.WARNING, "Could not compare the pages of " + dir + " to those of the previous run", ex);
         }
+    }
 
-        allAscii.mkdirs();
-        String allAsciiPath = allAscii.getAbsolutePath();
-        for (String plugin : allSteps.keySet()) {
-            LOG.info("processing " + plugin);
-            Map<String, List<QuasiDescriptor>> byPlugin = allSteps.get(plugin);
-            PluginWrapper thePlugin = pluginManager.getPlugin(plugin);
-            String displayName = thePlugin == null ? "Jenkins Core" : thePlugin.getDisplayName();
-            boolean isDeprecated = deprecatedPlugins.has(plugin);
-            String whole9yards = ToAsciiDoc.generatePluginHelp(plugin, displayName, byPlugin, isDeprecated, true);
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException ex) {
+            return -1;
+        }
+    }
 
+    @CheckForNull
+    private RegenerationManifest loadManifest(PluginManager pluginManager) {
+        try {
+            RegenerationManifest manifest = RegenerationManifest.load(
+                    Path.of(incremental), RegenerationManifest.fingerprint(getGeneratorFiles()));
+            manifest.scan(pluginManager.rootDir, pluginManager.getPlugins());
+            return manifest;
+        } catch (IOException | URISyntaxException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Could not read " + incremental + ", rendering all pages", ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return the code of the generator, which includes Jenkins core, and its configuration
+     */
+    private static List<Path> getGeneratorFiles() throws URISyntaxException {
+        List<Path> generator = new ArrayList<>();
+        for (Class<?> c : List.of(PipelineStepExtractor.class, Jenkins.class)) {
+            generator.add(Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        }
+        generator.add(Path.of("config.txt"));
+        return generator;
+    }
+
+    /**
+     * Opens the journal of the pages written to folders, resuming the previous run if asked to.
+     */
+    @CheckForNull
+    private String getCheckpoint() {
+        return checkpoint == null ? CHECKPOINT : checkpoint;
+    }
+
+    private CheckpointJournal openJournal() {
+        if (checkpoint == null && !resume) {
+            return null;
+        }
+        if ((shard != null && merge == null && modelSource == null) || serve > 0) {
+            return null; // writes no page, or the same pages again and again
+        }
+        if (zip) {
+            if (resume) {
+                LOG.warning("-resume checks the pages written to folders, not to zip files, writing all pages");
+            }
+            return null;
+        }
+        try {
+            File root = new File(homeDir == null ? System.getProperty("user.dir") : homeDir);
+            String fingerprint = CheckpointJournal.fingerprint(
+                    RegenerationManifest.fingerprint(getGeneratorFiles()), new File(root, "plugins"));
+            return CheckpointJournal.open(Path.of(getCheckpoint()), fingerprint, resume);
+        } catch (IOException | URISyntaxException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Could not open " + getCheckpoint() + ", writing all pages without a journal", ex);
+            return null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not write " + journal, ex);
+            }
+        }
+    }
+
+    private ModelSnapshot.Plugin extractPlugin(
+            String plugin,
+            Map<String, List<QuasiDescriptor>> byPlugin,
+            PluginManager pluginManager,
+            boolean isDeprecated) {
+        PluginWrapper thePlugin = pluginManager.getPlugin(plugin);
+        String displayName = thePlugin == null ? "Jenkins Core" : thePlugin.getDisplayName();
+        return extractor.plugin(plugin, displayName, byPlugin, isDeprecated);
+    }
+
+    private void generatePluginAscii(
+            String plugin,
+            boolean isDeprecated,
+            Function<String, ModelSnapshot.Plugin> pages,
+            String allAsciiPath,
+            @CheckForNull PageArchive archive,
+            @CheckForNull RegenerationManifest manifest,
+            Map<String, String> classesToPlugin) {
+        Path adoc = Path.of(allAsciiPath, plugin + ".adoc");
+        if (manifest != null && manifest.keep(plugin, isDeprecated, adoc)) {
+            LOG.info("keeping " + plugin);
+            return;
+        }
+        if (archive == null && resumePluginAscii(plugin, isDeprecated, adoc, manifest)) {
+            LOG.info("resuming after " + plugin);
+            return;
+        }
+        LOG.info("processing " + plugin);
+        RenderContext context = new RenderContext(fragments);
+        ModelSnapshot.Plugin page;
+        boolean written = false;
+        try (RunMetrics.Timer timer = metrics.plugin(plugin)) {
+            page = pages.apply(plugin);
+            if (archive != null) {
+                try {
+                    timer.output(archive.put(
+                            plugin + ".adoc", writer -> ToAsciiDoc.writePluginHelp(context, page, true, writer)));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Could not write the page of " + plugin, ex);
+                }
+            } else {
+                try {
+                    PageChanges.write(adoc, writer -> ToAsciiDoc.writePluginHelp(context, page, true, writer));
+                    written = true;
+                } catch (IOException ex) {
+                    LOG.log(Level.SEVERE, "Error generating plugin file for " + plugin + ".  Skip.", ex);
+                    // continue to next plugin
+                }
+                timer.output(adoc.toFile().length());
+            }
+        }
+        JSONObject checkpoint = new JSONObject().put("deprecated", isDeprecated);
+        if (manifest != null) {
+            Set<String> inputs = inputsOf(context, page, classesToPlugin);
+            Set<String> choices = pluginsOf(context.getChoices(), classesToPlugin);
+            manifest.rendered(plugin, isDeprecated, inputs, choices);
+            checkpoint.put("inputs", new JSONArray(inputs)).put("choices", new JSONArray(choices));
+        }
+        if (written && journal != null) {
             try {
-                Files.writeString(
-                        new File(allAsciiPath, plugin + ".adoc").toPath(), whole9yards, StandardCharsets.UTF_8);
-            } catch (Exception ex) {
-                LOG.log(Level.SEVERE, "Error generating plugin file for " + plugin + ".  Skip.", ex);
-                // continue to next plugin
+                journal.record(CheckpointJournal.PLUGIN, plugin, adoc, checkpoint);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Could not record " + plugin + " in " + journal, ex);
             }
         }
-        ProcessAsciiDoc pad = new ProcessAsciiDoc();
-        new File(allAsciiPath + "/params").mkdirs();
-        pad.processDocs(allAsciiPath, 100);
+    }
+
+    /**
+     * Checks whether the page of a plugin was completed by the run resumed, as rendered or as processed since.
+     * The manifest, if any, needs what the page documents, recorded along with it.
+     */
+    private boolean resumePluginAscii(
+            String plugin, boolean isDeprecated, Path adoc, @CheckForNull RegenerationManifest manifest) {
+        if (journal == null) {
+            return false;
+        }
+        JSONObject rendered = journal.completed(CheckpointJournal.PLUGIN, plugin, adoc);
+        if (rendered == null && journal.completed(CheckpointJournal.PROCESSED, adoc.getFileName().toString(), adoc)
+                != null) {
+            rendered = journal.get(CheckpointJournal.PLUGIN, plugin);
+        }
+        if (rendered == null || rendered.getBoolean("deprecated") != isDeprecated) {
+            return false;
+        }
+        if (manifest != null) {
+            if (!rendered.has("inputs")) {
+                return false;
+            }
+            manifest.rendered(
+                    plugin,
+                    isDeprecated,
+                    toSet(rendered.getJSONArray("inputs")),
+                    toSet(rendered.getJSONArray("choices")));
+        }
+        return true;
+    }
+
+    private static Set<String> toSet(JSONArray array) {
+        Set<String> set = new TreeSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            set.add(array.getString(i));
+        }
+        return set;
+    }
+
+    /**
+     * @return the plugins of the classes documented by the page of a plugin
+     */
+    static Set<String> inputsOf(
+            RenderContext context, ModelSnapshot.Plugin page, Map<String, String> classesToPlugin) {
+        Set<String> documented = new HashSet<>(context.getRendered());
+        for (ModelSnapshot.Section section : page.sections()) {
+            for (ModelSnapshot.Step step : section.steps()) {
+                documented.add(step.type());
+                documented.addAll(step.descriptors());
+            }
+        }
+        return pluginsOf(documented, classesToPlugin);
+    }
+
+    static Set<String> pluginsOf(Set<String> classNames, Map<String, String> classesToPlugin) {
+        Set<String> plugins = new TreeSet<>();
+        for (String className : classNames) {
+            String plugin = classesToPlugin.get(className);
+            plugins.add(plugin == null ? RegenerationManifest.CORE : plugin.trim());
+        }
+        return plugins;
     }
 
     public void generateDeclarativeSteps() {
-        DeclarativeSteps ds = new DeclarativeSteps();
-        ds.generateDeclarativeAscii(declarativeDest, pluginManager);
+        PageArchive archive = zip ? new PageArchive() : null;
+        try {
+            try (RunMetrics.Timer timer = metrics.phase("declarative")) {
+                DeclarativeSteps ds = new DeclarativeSteps();
+                ds.generateDeclarativeAscii(
+                        declarativeDest,
+                        ds.extractDirectives(extractor, getComponents()),
+                        fragments,
+                        metrics,
+                        threads,
+                        archive,
+                        journal);
+            }
+            LOG.info(fragments.toString());
+            writeDeclarativeArchive(archive);
+        } finally {
+            close(archive);
+        }
+    }
+
+    /**
+     * Renders the Declarative directives of an extracted model.
+     */
+    public void generateDeclarativeSteps(ModelSnapshot model) {
+        PageArchive archive = zip ? new PageArchive() : null;
+        try {
+            try (RunMetrics.Timer timer = metrics.phase("declarative")) {
+                new DeclarativeSteps()
+                        .generateDeclarativeAscii(
+                                declarativeDest, model.directives, fragments, metrics, threads, archive, journal);
+            }
+            LOG.info(fragments.toString());
+            writeDeclarativeArchive(archive);
+        } finally {
+            close(archive);
+        }
+    }
+
+    private void writeDeclarativeArchive(@CheckForNull PageArchive archive) {
+        if (archive != null) {
+            writeArchive(archive, new File(declarativeDest != null ? declarativeDest : "declarative.zip"));
+        }
     }
 }
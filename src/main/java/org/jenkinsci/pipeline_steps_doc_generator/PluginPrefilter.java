@@ -0,0 +1,388 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Descriptor;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import jenkins.plugins.DetachedPluginsUtil;
+import net.java.sezpoz.impl.SerAnnotatedElement;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+
+/**
+ * Selects the plugins worth booting out of a plugins folder, from their archives alone: the plugins contributing
+ * descriptors, which are documented as steps, Declarative directives or implementations of nested choices, and
+ * the plugins they depend on.
+ * <p>
+ * Extensions are read from the SezPoz index of each archive. An extension is a descriptor when its class extends
+ * {@link Descriptor}, following superclasses through the class files of the plugin and its dependencies, then
+ * core. Plugins are kept when this can't be decided, when they have extension factory methods or fields, or a
+ * {@code Plugin-Class} which may register descriptors itself. Plugins detached from core are kept as well, since
+ * older plugins depend on them implicitly.
+ */
+class PluginPrefilter {
+    private static final Logger LOG = Logger.getLogger(PluginPrefilter.class.getName());
+
+    private static final String EXTENSION_INDEX = "META-INF/annotations/hudson.Extension";
+    private static final String CLASSES = "WEB-INF/classes/";
+    private static final String LIB = "WEB-INF/lib/";
+    private static final ObjectInputFilter INDEX_FILTER =
+            ObjectInputFilter.Config.createFilter("net.java.sezpoz.impl.*;java.lang.*;java.util.*;!*");
+
+    /** Archives of the folder, by plugin short name. */
+    private final Map<String, Archive> archives = new TreeMap<>();
+
+    /** Kinds of classes, empty when it can't be decided. */
+    private final Map<String, Optional<Kind>> kinds = new HashMap<>();
+
+    private static final class Archive {
+        final Path file;
+        final List<String> dependencies = new ArrayList<>();
+        boolean pluginClass;
+        /** Classes annotated with {@code @Extension}. */
+        final List<String> extensions = new ArrayList<>();
+        /** Whether methods or fields are annotated with {@code @Extension}. */
+        boolean memberExtensions;
+        /** Superclasses of the classes of the jars holding extensions. */
+        final Map<String, String> superclasses = new HashMap<>();
+
+        Archive(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Reads the {@code .hpi} and {@code .jpi} archives of a plugins folder.
+     */
+    static PluginPrefilter scan(File pluginsDir) throws IOException {
+        PluginPrefilter prefilter = new PluginPrefilter();
+        try (Stream<Path> files = Files.list(pluginsDir.toPath())) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && (name.endsWith(".hpi") || name.endsWith(".jpi"))) {
+                    prefilter.read(file, name.substring(0, name.length() - 4));
+                }
+            }
+        }
+        return prefilter;
+    }
+
+    int size() {
+        return archives.size();
+    }
+
+    private void read(Path file, String fileName) throws IOException {
+        Archive archive = new Archive(file);
+        String shortName = fileName;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ZipEntry manifestEntry = zip.getEntry("META-INF/MANIFEST.MF");
+            if (manifestEntry != null) {
+                try (InputStream in = zip.getInputStream(manifestEntry)) {
+                    Attributes attributes = new Manifest(in).getMainAttributes();
+                    shortName = Optional.ofNullable(attributes.getValue("Short-Name"))
+                            .orElse(fileName);
+                    archive.pluginClass = attributes.getValue("Plugin-Class") != null;
+                    String dependencies = attributes.getValue("Plugin-Dependencies");
+                    if (dependencies != null) {
+                        for (String dependency : dependencies.split(",")) {
+                            archive.dependencies.add(dependency.split(":")[0].trim());
+                        }
+                    }
+                }
+            }
+            Map<String, String> classes = new HashMap<>();
+            boolean classesIndexed = false;
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.equals(CLASSES + EXTENSION_INDEX)) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        readIndex(in, archive);
+                    }
+                    classesIndexed = true;
+                } else if (name.startsWith(CLASSES) && name.endsWith(".class")) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        readClass(name.substring(CLASSES.length()), in, classes);
+                    }
+                } else if (name.startsWith(LIB) && name.endsWith(".jar")) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        readJar(in, archive);
+                    }
+                }
+            }
+            if (classesIndexed) {
+                archive.superclasses.putAll(classes);
+            }
+        }
+        archives.put(shortName, archive);
+    }
+
+    private static void readJar(InputStream in, Archive archive) throws IOException {
+        ZipInputStream jar = new ZipInputStream(in);
+        Map<String, String> classes = new HashMap<>();
+        boolean indexed = false;
+        for (ZipEntry entry = jar.getNextEntry(); entry != null; entry = jar.getNextEntry()) {
+            if (entry.getName().equals(EXTENSION_INDEX)) {
+                readIndex(jar, archive);
+                indexed = true;
+            } else if (entry.getName().endsWith(".class")) {
+                readClass(entry.getName(), jar, classes);
+            }
+        }
+        if (indexed) {
+            archive.superclasses.putAll(classes);
+        }
+    }
+
+    private static void readIndex(InputStream in, Archive archive) throws IOException {
+        ObjectInputStream index = new ObjectInputStream(in);
+        index.setObjectInputFilter(INDEX_FILTER);
+        try {
+            for (Object o = index.readObject(); o != null; o = index.readObject()) {
+                SerAnnotatedElement element = (SerAnnotatedElement) o;
+                if (element.memberName != null) {
+                    archive.memberExtensions = true;
+                } else {
+                    archive.extensions.add(element.className);
+                }
+            }
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Invalid extension index in " + archive.file, ex);
+        }
+    }
+
+    private static void readClass(String entryName, InputStream in, Map<String, String> classes) {
+        if (entryName.startsWith("META-INF/") || entryName.endsWith("module-info.class")) {
+            return;
+        }
+        try {
+            String superclass = readSuperclass(in);
+            if (superclass != null) {
+                classes.put(entryName.substring(0, entryName.length() - 6).replace('/', '.'), superclass);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Cannot read " + entryName, ex);
+        }
+    }
+
+    /**
+     * Reads the superclass from the header of a class file.
+     *
+     * @return the binary name of the superclass, or {@code null} for {@link Object}
+     */
+    static String readSuperclass(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        data.readUnsignedShort(); // minor version
+        data.readUnsignedShort(); // major version
+        int count = data.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = data.readUTF();
+                case 7 -> classes[i] = data.readUnsignedShort();
+                case 8, 16, 19, 20 -> data.readUnsignedShort();
+                case 15 -> {
+                    data.readUnsignedByte();
+                    data.readUnsignedShort();
+                }
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> data.readInt();
+                case 5, 6 -> {
+                    data.readLong();
+                    i++; // takes two entries
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        data.readUnsignedShort(); // access flags
+        data.readUnsignedShort(); // this class
+        int superclass = data.readUnsignedShort();
+        return superclass == 0 ? null : utf8[classes[superclass]].replace('/', '.');
+    }
+
+    /**
+     * Selects the plugins to boot.
+     *
+     * @return the short names of the plugins contributing descriptors, of their dependencies and of the plugins
+     * detached from core
+     */
+    Set<String> select() {
+        return select(null);
+    }
+
+    /**
+     * Selects the plugins to boot for a shard: the plugins contributing only step descriptors are booted by the
+     * shard documenting them, the plugins contributing other descriptors by all shards since the pages of any plugin
+     * may document them.
+     */
+    Set<String> select(@CheckForNull Shard shard) {
+        Deque<String> todo = new ArrayDeque<>();
+        for (Map.Entry<String, Archive> entry : archives.entrySet()) {
+            Kind kind = kindOf(entry.getKey(), entry.getValue());
+            if (kind == Kind.DESCRIPTOR || kind == Kind.STEP && (shard == null || shard.owns(entry.getKey()))) {
+                todo.add(entry.getKey());
+            }
+        }
+        for (DetachedPluginsUtil.DetachedPlugin detached : DetachedPluginsUtil.getDetachedPlugins()) {
+            todo.add(detached.getShortName());
+        }
+        Set<String> selected = new TreeSet<>();
+        while (!todo.isEmpty()) {
+            String plugin = todo.pop();
+            Archive archive = archives.get(plugin);
+            if (archive != null && selected.add(plugin)) {
+                todo.addAll(archive.dependencies);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * What a class or a plugin contributes, as far as booting it goes.
+     */
+    private enum Kind {
+        /** Nothing documented. */
+        NONE,
+        /** Step descriptors only. */
+        STEP,
+        /** Other descriptors, or what couldn't be decided. */
+        DESCRIPTOR
+    }
+
+    private Kind kindOf(String plugin, Archive archive) {
+        if (archive.pluginClass || archive.memberExtensions) {
+            return Kind.DESCRIPTOR;
+        }
+        Kind kind = Kind.NONE;
+        for (String extension : archive.extensions) {
+            Kind extensionKind = kindOf(extension, plugin).orElse(Kind.DESCRIPTOR);
+            if (extensionKind.compareTo(kind) > 0) {
+                kind = extensionKind;
+            }
+        }
+        return kind;
+    }
+
+    private Optional<Kind> kindOf(String className, String plugin) {
+        Optional<Kind> known = kinds.get(className);
+        if (known != null) {
+            return known;
+        }
+        Optional<Kind> result;
+        if (className.equals(StepDescriptor.class.getName())) {
+            result = Optional.of(Kind.STEP);
+        } else if (className.equals(Descriptor.class.getName())) {
+            result = Optional.of(Kind.DESCRIPTOR);
+        } else {
+            String superclass = superclassOf(className, plugin);
+            if (superclass != null) {
+                result = kindOf(superclass, plugin);
+            } else {
+                result = coreKindOf(className);
+            }
+        }
+        kinds.put(className, result);
+        return result;
+    }
+
+    /**
+     * Looks up the superclass of a class in a plugin and its dependencies.
+     */
+    private String superclassOf(String className, String plugin) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> todo = new ArrayDeque<>(List.of(plugin));
+        while (!todo.isEmpty()) {
+            Archive archive = archives.get(todo.pop());
+            if (archive != null && visited.add(archive.file.toString())) {
+                String superclass = archive.superclasses.get(className);
+                if (superclass != null) {
+                    return superclass;
+                }
+                todo.addAll(archive.dependencies);
+            }
+        }
+        return null;
+    }
+
+    private static Optional<Kind> coreKindOf(String className) {
+        try {
+            Class<?> c = Class.forName(className, false, PluginPrefilter.class.getClassLoader());
+            if (StepDescriptor.class.isAssignableFrom(c)) {
+                return Optional.of(Kind.STEP);
+            }
+            return Optional.of(Descriptor.class.isAssignableFrom(c) ? Kind.DESCRIPTOR : Kind.NONE);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Makes a plugins folder holding the selected archives only, linked to the originals when possible.
+     */
+    void stage(Set<String> selected, File dest) throws IOException {
+        Path dir = dest.toPath();
+        Files.createDirectories(dir);
+        Set<String> names = new HashSet<>();
+        for (String plugin : selected) {
+            Path source = archives.get(plugin).file;
+            Path target = dir.resolve(source.getFileName());
+            names.add(source.getFileName().toString());
+            if (!isSame(source, target)) {
+                Files.deleteIfExists(target);
+                try {
+                    Files.createLink(target, source);
+                } catch (IOException | UnsupportedOperationException ex) {
+                    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(".hpi") || name.endsWith(".jpi")) && !names.contains(name)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static boolean isSame(Path source, Path target) throws IOException {
+        if (!Files.isRegularFile(target)) {
+            return false;
+        }
+        BasicFileAttributes s = Files.readAttributes(source, BasicFileAttributes.class);
+        BasicFileAttributes t = Files.readAttributes(target, BasicFileAttributes.class);
+        return s.size() == t.size() && s.lastModifiedTime().equals(t.lastModifiedTime());
+    }
+}
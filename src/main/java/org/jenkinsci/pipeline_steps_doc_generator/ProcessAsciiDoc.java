@@ -1,5 +1,6 @@
 package org.jenkinsci.pipeline_steps_doc_generator;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -8,25 +9,43 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  * Acts as a processing layer after the AsciiDocs are generated from
  * {@link ToAsciiDoc}.
- * It removes redundancy of the configured parameter class names, by creating a
+ * It removes redundancy of the repeated and configured parameter class names, by creating a
  * global document of the class that all Pipeline steps can refer to.
  */
 public class ProcessAsciiDoc {
 
     private static final Logger LOG = Logger.getLogger(ProcessAsciiDoc.class.getName());
 
+    /**
+     * Default of {@link #setRepeatedLines(long)}: only the classes of {@code config.txt} are separated, as before
+     * repeated classes were detected.
+     */
+    public static final long REPEATED_LINES = 0;
+
+    private long repeatedLines = REPEATED_LINES;
+
+    /**
+     * Sets how many lines the repetitions of a parameter class documented identically in several places must add up
+     * to for the class to be separated, in addition to those of {@code config.txt}. Detecting them reads every page
+     * once more, before the pass separating the classes.
+     *
+     * @param repeatedLines {@code 0} to only separate the classes of {@code config.txt}
+     */
+    public void setRepeatedLines(long repeatedLines) {
+        this.repeatedLines = repeatedLines;
+    }
+
     public void generateHeader(StringBuilder toWrite, String className) {
-        toWrite.append("---\nlayout: pipelinesteps\ntitle: \"")
-                .append(className)
-                .append("\"\n---\n")
-                .append("== " + className + "\n")
-                .append("\n++++\n");
+        toWrite.append(ParamsSeparator.header(className));
     }
 
     /**
@@ -35,85 +54,109 @@ public class ProcessAsciiDoc {
      */
     public String separateClass(String className, String allAscii, File child, int linesThreshold)
             throws IOException, RuntimeException {
-        BufferedReader br = new BufferedReader(new FileReader(child, StandardCharsets.UTF_8));
-        StringBuilder duplicate = new StringBuilder(); // contains the content of the current file minus the parameter
+        List<String> lines;
+        try (BufferedReader br = new BufferedReader(new FileReader(child, StandardCharsets.UTF_8))) {
+            lines = br.lines().toList();
+        }
+        List<String> duplicate = new ArrayList<>(); // contains the content of the current file minus the parameter
         // details
-        String line;
-        int counter = 0; // keeps a count of opening and closing li tags to mark the end of a section
-        boolean flag = false;
-        int lines = 0;
-        String url = className.toLowerCase().replaceAll("class", "").replaceAll("[^a-zA-Z0-9]", "");
-        Path adocPath = Path.of(allAscii + "/params/" + url + ".adoc"); // points to the params folder that will contain
-        // the separated files
-        StringBuilder newAdoc = new StringBuilder(); // new file that contains only the parameter details
-        generateHeader(newAdoc, className);
+        String newAdoc = ParamsSeparator.separate(lines, className, linesThreshold, duplicate);
+        if (newAdoc != null) {
+            // points to the params folder that will contain the separated files
+            PageChanges.write(Path.of(allAscii + "/params/" + ParamsSeparator.url(className) + ".adoc"), newAdoc);
+        }
+        return ParamsSeparator.join(duplicate);
+    }
+
+    /**
+     * Separates the parameter classes repeated in the AsciiDocs, and those of the configuration file if it exists.
+     * A configured class lacking sufficient documentation is left in place, with a warning.
+     * Please refer to the README while troubleshooting.
+     *
+     * @param allAscii path to the directory containing all the AsciiDocs.
+     */
+    public void processDocs(String allAscii, int linesThreshold) {
+        processDocs(allAscii, linesThreshold, (CheckpointJournal) null);
+    }
+
+    /**
+     * @param journal records every AsciiDoc processed, so that a resumed run does not process it again
+     */
+    void processDocs(String allAscii, int linesThreshold, @CheckForNull CheckpointJournal journal) {
         try {
-            while ((line = br.readLine()) != null) {
-                if (!flag && line.contains("<li><code>" + className + "</code><div>")) {
-                    flag = true;
-                    duplicate.append("<li><span><a href=\"/doc/pipeline/steps/params/" + url + "\"><code>" + className
-                            + "</code></a></span></li>\n");
-                } else if (!flag) {
-                    duplicate.append(line).append("\n");
-                }
-                if (flag) {
-                    counter += (line.split("<li>", -1).length - line.split("</li>", -1).length);
-                    lines++;
-                    if (newAdoc != null) newAdoc.append(line).append("\n");
-                    if (counter == 0) {
-                        if (newAdoc != null) {
-                            if (lines < linesThreshold) {
-                                throw new RuntimeException("Invalid Configuration, " + className
-                                        + " does not have sufficient documentation to be separated!");
-                                // halt the program if any of the configured parameters does not contain
-                                // sufficient documentation
-                            }
-                            newAdoc.append("\n\n++++");
-                            Files.writeString(adocPath, newAdoc.toString());
-                            newAdoc = null;
+            List<String> classNames = getSeparated(journal);
+            if (classNames == null) {
+                RepeatedBlocks blocks = new RepeatedBlocks();
+                File[] directoryListing = repeatedLines > 0 ? new File(allAscii).listFiles() : null;
+                if (directoryListing != null) {
+                    for (File child : directoryListing) {
+                        if (child.getName().endsWith(".adoc")) {
+                            blocks.scan(Files.readString(child.toPath(), StandardCharsets.UTF_8));
                         }
-                        lines = 0;
-                        flag = false;
                     }
                 }
+                classNames = select(blocks, linesThreshold, journal);
             }
+            processDocs(allAscii, linesThreshold, classNames, journal);
         } catch (IOException ex) {
             ex.printStackTrace();
-        } finally {
-            br.close();
         }
-        return duplicate.toString();
     }
 
     /**
-     * Note that the method exits when the configuration file does not follow the
-     * suggested conventions.
-     * Please refer to the README while troubleshooting.
+     * Separates the given parameter class names out of all the AsciiDocs.
+     * Every AsciiDoc is read once and rewritten at most once, whatever the number of class names.
      *
      * @param allAscii path to the directory containing all the AsciiDocs.
-     * @throws RuntimeException thrown if a configured class lacks sufficient
-     *                          documentation.
-     * @throws IOException
+     * @param classNames parameter class names, inner classes first.
      */
-    public void processDocs(String allAscii, int linesThreshold) {
+    public void processDocs(String allAscii, int linesThreshold, List<String> classNames) {
+        processDocs(allAscii, linesThreshold, classNames, null);
+    }
+
+    /**
+     * Separates the given parameter class names out of all the AsciiDocs, skipping those the journal records as
+     * processed already, whose separate pages are taken into account as if they had just been written.
+     */
+    void processDocs(
+            String allAscii, int linesThreshold, List<String> classNames, @CheckForNull CheckpointJournal journal) {
         File dir = new File(allAscii);
         File[] directoryListing = dir.listFiles();
         LOG.info("processing the generated asciidocs...");
+        ParamsSeparator separator = new ParamsSeparator(allAscii, classNames, linesThreshold);
+        int pages = 0;
+        int rewritten = 0;
+        int resumed = 0;
         try {
-            List<String> config = Files.readAllLines(Paths.get("config.txt"));
-            for (String className : config) {
-                className = className.trim();
-                if (className.startsWith("--") || className.isBlank()) {
-                    continue;
-                }
-                LOG.info("Iterating through parameter class name: " + className);
-                if (directoryListing != null) {
-                    for (File child : directoryListing) {
-                        String fileName = child.getName();
-                        String type = fileName.substring(fileName.lastIndexOf('.') + 1);
-                        if (type.equals("adoc")) {
-                            Path currentPath = Path.of(child.getPath());
-                            Files.writeString(currentPath, separateClass(className, allAscii, child, linesThreshold));
+            if (directoryListing != null) {
+                for (File child : directoryListing) {
+                    String fileName = child.getName();
+                    String type = fileName.substring(fileName.lastIndexOf('.') + 1);
+                    if (type.equals("adoc")) {
+                        Path currentPath = Path.of(child.getPath());
+                        JSONObject previous = journal == null
+                                ? null
+                                : journal.completed(CheckpointJournal.PROCESSED, fileName, currentPath);
+                        if (previous != null) {
+                            JSONObject extracts = previous.getJSONObject("params");
+                            for (String extract : extracts.keySet()) {
+                                separator.restore(extract, extracts.getInt(extract));
+                            }
+                            resumed++;
+                            continue;
+                        }
+                        String processed = separator.processPage(
+                                new String(Files.readAllBytes(currentPath), StandardCharsets.UTF_8));
+                        pages++;
+                        if (processed != null && PageChanges.write(currentPath, processed)) {
+                            rewritten++;
+                        }
+                        if (journal != null) {
+                            journal.record(
+                                    CheckpointJournal.PROCESSED,
+                                    fileName,
+                                    currentPath,
+                                    new JSONObject().put("params", new JSONObject(separator.getPageExtracts())));
                         }
                     }
                 }
@@ -121,5 +164,96 @@ public class ProcessAsciiDoc {
         } catch (IOException | RuntimeException ex) {
             ex.printStackTrace();
         }
+        LOG.info("Separated " + classNames.size() + " parameter class names out of " + pages + " asciidocs, rewrote "
+                + rewritten + (resumed > 0 ? ", " + resumed + " processed by the previous run" : ""));
+    }
+
+    /**
+     * Separates the configured parameter class names out of the AsciiDocs of an archive, adding the separate pages
+     * to its {@code params/} folder.
+     *
+     * @throws IOException if a page cannot be processed, in which case the archive is left half processed
+     */
+    void processDocs(PageArchive allAscii, int linesThreshold) throws IOException {
+        RepeatedBlocks blocks = new RepeatedBlocks();
+        for (String name : allAscii.getRootNames()) {
+            if (repeatedLines > 0 && name.endsWith(".adoc")) {
+                blocks.scan(allAscii.get(name));
+            }
+        }
+        processDocs(allAscii, linesThreshold, select(blocks, linesThreshold, null));
+    }
+
+    /**
+     * @return the classes separated by the run resumed, if it started the separation
+     */
+    @CheckForNull
+    private static List<String> getSeparated(@CheckForNull CheckpointJournal journal) {
+        JSONObject previous = journal == null ? null : journal.get(CheckpointJournal.SEPARATED, "classNames");
+        if (previous == null) {
+            return null;
+        }
+        JSONArray array = previous.getJSONArray("classNames");
+        List<String> classNames = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            classNames.add(array.getString(i));
+        }
+        return classNames;
+    }
+
+    /**
+     * Selects the classes repeated in the pages scanned, and those of {@code config.txt} if it exists.
+     *
+     * @param journal records the classes selected, so that a resumed run separates the same ones
+     */
+    private List<String> select(RepeatedBlocks blocks, int linesThreshold, @CheckForNull CheckpointJournal journal)
+            throws IOException {
+        Path config = Paths.get("config.txt");
+        List<String> configured = Files.exists(config) ? readConfig(config) : List.of();
+        List<String> classNames = blocks.select(linesThreshold, repeatedLines, configured);
+        if (journal != null) {
+            journal.record(
+                    CheckpointJournal.SEPARATED,
+                    "classNames",
+                    new JSONObject().put("classNames", new JSONArray(classNames)));
+        }
+        return classNames;
+    }
+
+    void processDocs(PageArchive allAscii, int linesThreshold, List<String> classNames) throws IOException {
+        LOG.info("processing the generated asciidocs...");
+        ParamsSeparator separator = new ParamsSeparator(
+                (fileName, extract) -> allAscii.put("params/" + fileName + ".adoc", extract),
+                classNames,
+                linesThreshold);
+        int pages = 0;
+        int rewritten = 0;
+        for (String name : allAscii.getRootNames()) {
+            if (name.endsWith(".adoc")) {
+                String processed = separator.processPage(allAscii.get(name));
+                pages++;
+                if (processed != null) {
+                    allAscii.put(name, processed);
+                    rewritten++;
+                }
+            }
+        }
+        LOG.info("Separated " + classNames.size() + " parameter class names out of " + pages + " asciidocs, rewrote "
+                + rewritten);
+    }
+
+    /**
+     * Reads the parameter class names from a configuration file, skipping blank lines and "--" comments.
+     */
+    static List<String> readConfig(Path config) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (String className : Files.readAllLines(config)) {
+            className = className.trim();
+            if (className.startsWith("--") || className.isBlank()) {
+                continue;
+            }
+            classNames.add(className);
+        }
+        return classNames;
     }
 }
@@ -19,6 +19,10 @@ public class QuasiDescriptor {
         this.parent = parent;
     }
 
+    StepDescriptor getParent() {
+        return parent;
+    }
+
     public String getSymbol() {
         if (real instanceof StepDescriptor descriptor) {
             return descriptor.getFunctionName();
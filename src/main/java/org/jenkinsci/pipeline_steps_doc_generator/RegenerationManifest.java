@@ -0,0 +1,292 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import hudson.PluginWrapper;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Inputs and outputs of the plugin pages generated by a run, so that the next run only renders the pages
+ * whose inputs changed.
+ * <p>
+ * A page is kept when its file is as it was left, and none of these plugin archives changed:
+ * <ul>
+ * <li>the plugin of the page and its dependencies,</li>
+ * <li>the plugins whose classes were documented in the page,</li>
+ * <li>a plugin which may add implementations to a nested choice of the page, that is one depending on the plugin
+ * of the base type of the choice.</li>
+ * </ul>
+ * Jenkins core is not a plugin archive: it is part of the generator, which is fingerprinted as a whole.
+ */
+class RegenerationManifest {
+    private static final Logger LOG = Logger.getLogger(RegenerationManifest.class.getName());
+
+    static final String CORE = "core";
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final String generator;
+
+    /** Plugin archive hashes and pages of the previous run, empty if the generator changed. */
+    private final Map<String, String> previousArchives;
+
+    private final Map<String, Page> previousPages;
+
+    private final Map<String, String> archives = new TreeMap<>();
+    private final Map<String, List<String>> dependencies = new HashMap<>();
+    private final Set<String> changed = new TreeSet<>();
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+
+    private record Page(boolean deprecated, Set<String> inputs, Set<String> choices, String adoc) {}
+
+    private RegenerationManifest(
+            Path file, String generator, Map<String, String> previousArchives, Map<String, Page> previousPages) {
+        this.file = file;
+        this.generator = generator;
+        this.previousArchives = previousArchives;
+        this.previousPages = previousPages;
+    }
+
+    /**
+     * Reads the manifest left by the previous run, if any.
+     *
+     * @param generator fingerprint of the generator, see {@link #fingerprint(Collection)}
+     */
+    static RegenerationManifest load(Path file, String generator) throws IOException {
+        Map<String, String> archives = new HashMap<>();
+        Map<String, Page> pages = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            if (json.optInt("version") == VERSION && generator.equals(json.optString("generator"))) {
+                JSONObject jsonArchives = json.getJSONObject("archives");
+                for (String plugin : jsonArchives.keySet()) {
+                    archives.put(plugin, jsonArchives.getString(plugin));
+                }
+                JSONObject jsonPages = json.getJSONObject("pages");
+                for (String plugin : jsonPages.keySet()) {
+                    JSONObject page = jsonPages.getJSONObject(plugin);
+                    pages.put(
+                            plugin,
+                            new Page(
+                                    page.getBoolean("deprecated"),
+                                    toSet(page.getJSONArray("inputs")),
+                                    toSet(page.getJSONArray("choices")),
+                                    page.getString("adoc")));
+                }
+            } else {
+                LOG.info("The generator changed since " + file + " was written, rendering all pages");
+            }
+        }
+        return new RegenerationManifest(file, generator, archives, pages);
+    }
+
+    private static Set<String> toSet(JSONArray array) {
+        Set<String> set = new TreeSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            set.add(array.getString(i));
+        }
+        return set;
+    }
+
+    /**
+     * Hashes the plugin archives and records the dependencies of the loaded plugins.
+     *
+     * @param pluginsDir directory holding the {@code .hpi} or {@code .jpi} archives
+     */
+    void scan(File pluginsDir, Collection<? extends PluginWrapper> plugins) throws IOException {
+        try (Stream<Path> files = Files.list(pluginsDir.toPath())) {
+            for (Path archive : (Iterable<Path>) files::iterator) {
+                String name = archive.getFileName().toString();
+                if (Files.isRegularFile(archive) && (name.endsWith(".hpi") || name.endsWith(".jpi"))) {
+                    archives.put(name.substring(0, name.length() - 4), hash(archive));
+                }
+            }
+        }
+        for (PluginWrapper plugin : plugins) {
+            dependencies.put(
+                    plugin.getShortName(),
+                    plugin.getDependencies().stream().map(d -> d.shortName).toList());
+        }
+        for (Map.Entry<String, String> archive : archives.entrySet()) {
+            if (!archive.getValue().equals(previousArchives.get(archive.getKey()))) {
+                changed.add(archive.getKey());
+            }
+        }
+        for (String plugin : previousArchives.keySet()) {
+            if (!archives.containsKey(plugin)) {
+                changed.add(plugin);
+            }
+        }
+        LOG.info(changed.size() + " of " + archives.size() + " plugin archives changed since the previous run");
+    }
+
+    /**
+     * Plugins whose classes are visible to a plugin: itself, its dependencies, transitively, and core.
+     */
+    private Set<String> closure(String plugin) {
+        Set<String> closure = new HashSet<>();
+        closure.add(CORE);
+        Deque<String> todo = new ArrayDeque<>(List.of(plugin));
+        while (!todo.isEmpty()) {
+            String next = todo.pop();
+            if (closure.add(next)) {
+                todo.addAll(dependencies.getOrDefault(next, List.of()));
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Checks whether the page of a plugin left by the previous run can be kept, in which case it is recorded
+     * again for the next run.
+     */
+    boolean keep(String plugin, boolean deprecated, Path adoc) {
+        Page page = previousPages.get(plugin);
+        if (page == null || page.deprecated() != deprecated || !Files.isRegularFile(adoc)) {
+            return false;
+        }
+        Set<String> inputs = closure(plugin);
+        inputs.addAll(page.inputs());
+        for (String input : inputs) {
+            if (!Objects.equals(previousArchives.get(input), archives.get(input))) {
+                return false;
+            }
+        }
+        for (String other : changed) {
+            if (!Collections.disjoint(closure(other), page.choices())) {
+                return false; // may implement one of the choices
+            }
+        }
+        try {
+            if (!page.adoc().equals(hash(adoc))) {
+                return false;
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+        pages.put(plugin, page);
+        return true;
+    }
+
+    /**
+     * Records the page of a plugin rendered by this run.
+     *
+     * @param inputs plugins whose classes were documented in the page
+     * @param choices plugins of the base types of the nested choices listed in the page
+     */
+    void rendered(String plugin, boolean deprecated, Set<String> inputs, Set<String> choices) {
+        pages.put(plugin, new Page(deprecated, new TreeSet<>(inputs), new TreeSet<>(choices), null));
+    }
+
+    /**
+     * Pages of the previous run whose plugin archive is gone, as opposed to pages this run failed to render.
+     */
+    Set<String> removed() {
+        Set<String> removed = new TreeSet<>(previousPages.keySet());
+        removed.removeAll(pages.keySet());
+        removed.removeAll(archives.keySet());
+        return removed;
+    }
+
+    /**
+     * Writes the manifest for the next run, hashing the pages as they are now.
+     *
+     * @param dir directory holding the pages
+     */
+    void save(String dir) throws IOException {
+        JSONObject jsonPages = new JSONObject();
+        for (Map.Entry<String, Page> entry : new TreeMap<>(pages).entrySet()) {
+            Path adoc = Path.of(dir, entry.getKey() + ".adoc");
+            if (!Files.isRegularFile(adoc)) {
+                continue; // failed to write, render it next time
+            }
+            Page page = entry.getValue();
+            jsonPages.put(
+                    entry.getKey(),
+                    new JSONObject()
+                            .put("deprecated", page.deprecated())
+                            .put("inputs", new JSONArray(page.inputs()))
+                            .put("choices", new JSONArray(page.choices()))
+                            .put("adoc", hash(adoc)));
+        }
+        JSONObject json = new JSONObject()
+                .put("version", VERSION)
+                .put("generator", generator)
+                .put("archives", new JSONObject(archives))
+                .put("pages", jsonPages);
+        Files.writeString(file, json.toString(1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fingerprints the code of the generator, which includes Jenkins core, and its configuration.
+     *
+     * @param paths jar files, class directories or configuration files
+     */
+    static String fingerprint(Collection<Path> paths) throws IOException {
+        MessageDigest digest = sha256();
+        for (Path path : paths) {
+            digest.update(path.toString().getBytes(StandardCharsets.UTF_8));
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(f -> {
+                        try {
+                            digest.update(path.relativize(f).toString().getBytes(StandardCharsets.UTF_8));
+                            digest.update(hash(f).getBytes(StandardCharsets.UTF_8));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            } else if (Files.isRegularFile(path)) {
+                digest.update(hash(path).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
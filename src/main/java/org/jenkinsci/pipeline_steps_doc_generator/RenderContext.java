@@ -0,0 +1,176 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.structs.describable.DescribableModel;
+
+/**
+ * State of one rendering by {@link ToAsciiDoc}, passed down through the nested calls.
+ * A context is confined to the thread doing the rendering, so several renderings can run
+ * at once with their own context, sharing the caches of the run.
+ */
+public class RenderContext {
+    @CheckForNull
+    private final FragmentCache fragments;
+
+    /**
+     * Keeps track of nested {@link DescribableModel#getType()} names to avoid recursion, with their depth.
+     */
+    private final Map<String, Integer> nesting = new HashMap<>();
+
+    /**
+     * Types being rendered, innermost first. Only tracked when fragments are cached.
+     */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /**
+     * Every type documented by this rendering, including those taken from the cache.
+     */
+    private final Set<String> rendered = new HashSet<>();
+
+    /**
+     * Base types of the nested choices documented by this rendering, whose implementations were listed.
+     */
+    private final Set<String> choices = new HashSet<>();
+
+    private static final class Frame {
+        final String type;
+        final Set<String> cutBy = new HashSet<>();
+        final Set<String> entered = new HashSet<>();
+        final Set<String> choices = new HashSet<>();
+
+        Frame(String type) {
+            this.type = type;
+        }
+    }
+
+    public RenderContext() {
+        this(null);
+    }
+
+    /**
+     * @param fragments cache of the run to reuse nested documentation from, or {@code null} to render everything
+     */
+    public RenderContext(@CheckForNull FragmentCache fragments) {
+        this.fragments = fragments;
+    }
+
+    /**
+     * Records that the documentation of a type is being generated.
+     *
+     * @return {@code false} if the type is already being generated further up, in which case the search is cut
+     */
+    boolean enter(String type) {
+        Integer depth = nesting.get(type);
+        if (depth != null) {
+            Frame current = frames.peek();
+            if (current != null && depth < nesting.size() - 1) {
+                current.cutBy.add(type);
+            }
+            return false;
+        }
+        nesting.put(type, nesting.size());
+        rendered.add(type);
+        if (fragments != null) {
+            frames.push(new Frame(type));
+        }
+        return true;
+    }
+
+    /**
+     * Records that the documentation of a type entered by {@link #enter(Class)} is complete.
+     */
+    void exit(String type) {
+        int depth = nesting.remove(type);
+        if (fragments != null) {
+            Frame done = frames.pop();
+            Frame parent = frames.peek();
+            if (parent != null) {
+                parent.entered.add(done.type);
+                parent.entered.addAll(done.entered);
+                parent.choices.addAll(done.choices);
+                for (String cut : done.cutBy) {
+                    Integer cutDepth = nesting.get(cut);
+                    if (cutDepth != null && cutDepth < depth - 1) {
+                        parent.cutBy.add(cut);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the implementations of a base type are listed as a nested choice.
+     */
+    void choice(String baseType) {
+        choices.add(baseType);
+        Frame current = frames.peek();
+        if (current != null) {
+            current.choices.add(baseType);
+        }
+    }
+
+    Set<String> getRendered() {
+        return Collections.unmodifiableSet(rendered);
+    }
+
+    Set<String> getChoices() {
+        return Collections.unmodifiableSet(choices);
+    }
+
+    /**
+     * Looks up the documentation of the type being generated, as rendered earlier in the same surroundings.
+     *
+     * @return the cached documentation, or {@code null} if it has to be rendered
+     */
+    @CheckForNull
+    String cached(boolean indent) {
+        if (fragments == null) {
+            return null;
+        }
+        Frame current = frames.element();
+        FragmentCache.Fragment fragment = fragments.lookup(current.type, indent, this::isApplicable);
+        if (fragment == null) {
+            return null;
+        }
+        current.cutBy.addAll(fragment.cutBy);
+        current.entered.addAll(fragment.entered);
+        current.choices.addAll(fragment.choices);
+        rendered.addAll(fragment.entered);
+        choices.addAll(fragment.choices);
+        return fragment.text;
+    }
+
+    /**
+     * Caches the documentation of the type being generated, once all nested types are complete.
+     */
+    void store(boolean indent, String text) {
+        if (fragments != null) {
+            Frame current = frames.element();
+            fragments.store(
+                    current.type,
+                    indent,
+                    new FragmentCache.Fragment(text, current.cutBy, current.entered, current.choices));
+        }
+    }
+
+    private boolean isApplicable(FragmentCache.Fragment fragment) {
+        for (String type : fragment.cutBy) {
+            if (!nesting.containsKey(type)) {
+                return false;
+            }
+        }
+        for (String type : fragment.entered) {
+            if (nesting.containsKey(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
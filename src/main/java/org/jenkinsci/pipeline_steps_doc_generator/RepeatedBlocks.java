@@ -0,0 +1,218 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Documentation blocks of the parameter classes found in the generated pages, by class name, to find those worth
+ * separating to their own page.
+ * <p>
+ * A block starts on the line holding its {@code <li><code>...</code><div>} marker and ends with the line closing its
+ * {@code <li>}, as {@link ParamsSeparator} separates it. Blocks are compared by hash, so that a class documented
+ * differently in some pages, by a nested choice listing other implementations for instance, is never separated
+ * automatically. Links left in place of a block, by a previous run in the pages kept by {@code -incremental}, count
+ * as occurrences of the block.
+ */
+final class RepeatedBlocks {
+    private static final Logger LOG = Logger.getLogger(RepeatedBlocks.class.getName());
+
+    private static final String MARKER_START = "<li><code>";
+    private static final String MARKER_END = "</code><div>";
+    private static final String LINK_START = "<li><span><a href=\"/doc/pipeline/steps/params/";
+    private static final String LINK_CODE = "\"><code>";
+    private static final String LINK_END = "</code></a></span></li>";
+
+    private static final class Block {
+        final byte[] hash;
+        final int lines;
+        int occurrences = 1;
+        boolean conflicting;
+
+        Block(byte[] hash, int lines) {
+            this.hash = hash;
+            this.lines = lines;
+        }
+    }
+
+    private static final class OpenBlock {
+        final String className;
+        final MessageDigest digest = sha256();
+        int counter;
+        int lines;
+
+        OpenBlock(String className) {
+            this.className = className;
+        }
+    }
+
+    private final Map<String, Block> blocks = new HashMap<>();
+    /** Links to the separate page of a class, left by a previous run in the pages it kept. */
+    private final Map<String, Integer> links = new HashMap<>();
+    /** Classes documented in the blocks of each class, at any depth. */
+    private final Map<String, Set<String>> nested = new HashMap<>();
+
+    /**
+     * Counts the blocks of a page, nested ones included.
+     */
+    void scan(String page) {
+        List<OpenBlock> open = new ArrayList<>();
+        for (String line : page.lines().toList()) {
+            countLinks(line);
+            for (int start = line.indexOf(MARKER_START); start >= 0; ) {
+                int nameStart = start + MARKER_START.length();
+                int end = line.indexOf(MARKER_END, nameStart);
+                if (end < 0) {
+                    break;
+                }
+                String className = line.substring(nameStart, end);
+                for (OpenBlock outer : open) {
+                    nested.computeIfAbsent(outer.className, k -> new HashSet<>()).add(className);
+                }
+                open.add(new OpenBlock(className));
+                start = line.indexOf(MARKER_START, nameStart);
+            }
+            if (open.isEmpty()) {
+                continue;
+            }
+            int delta = occurrences(line, "<li>") - occurrences(line, "</li>");
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            for (Iterator<OpenBlock> it = open.iterator(); it.hasNext(); ) {
+                OpenBlock block = it.next();
+                block.digest.update(bytes);
+                block.lines++;
+                block.counter += delta;
+                if (block.counter <= 0) {
+                    add(block.className, block.digest.digest(), block.lines);
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void countLinks(String line) {
+        for (int start = line.indexOf(LINK_START); start >= 0; start = line.indexOf(LINK_START, start + 1)) {
+            int code = line.indexOf(LINK_CODE, start);
+            int end = code < 0 ? -1 : line.indexOf(LINK_END, code);
+            if (end < 0) {
+                break;
+            }
+            links.merge(line.substring(code + LINK_CODE.length(), end), 1, Integer::sum);
+        }
+    }
+
+    private void add(String className, byte[] hash, int lines) {
+        Block block = blocks.get(className);
+        if (block == null) {
+            blocks.put(className, new Block(hash, lines));
+        } else {
+            block.occurrences++;
+            block.conflicting |= !Arrays.equals(block.hash, hash);
+        }
+    }
+
+    /**
+     * Selects the classes to separate: those whose block is documented identically at least twice, has at least
+     * {@code linesThreshold} lines, and whose repetitions add up to at least {@code repeatedLines} lines, and the
+     * configured classes.
+     * Classes are separated inner first, since a class left inline in the page of a class separated before it is
+     * never separated from that page: detected classes are sorted by size and come before the configured ones, and
+     * any class is moved after the classes documented in its blocks. Detected classes which would share the file
+     * name of another class are left in place. Configured classes whose block is too short are left in place too,
+     * with a warning.
+     *
+     * @param configured class names configured to be separated, inner classes first
+     * @param repeatedLines minimum number of lines repeated, {@code 0} to only separate the configured classes
+     */
+    List<String> select(int linesThreshold, long repeatedLines, Collection<String> configured) {
+        Set<String> configuredSet = new LinkedHashSet<>(configured);
+        List<String> detected = new ArrayList<>();
+        if (repeatedLines > 0) {
+            for (Map.Entry<String, Block> entry : blocks.entrySet()) {
+                Block block = entry.getValue();
+                int occurrences = block.occurrences + links.getOrDefault(entry.getKey(), 0);
+                if (!block.conflicting
+                        && occurrences > 1
+                        && block.lines >= linesThreshold
+                        && (long) block.lines * (occurrences - 1) >= repeatedLines
+                        && !configuredSet.contains(entry.getKey())
+                        && !ParamsSeparator.url(entry.getKey()).isEmpty()) {
+                    detected.add(entry.getKey());
+                }
+            }
+        }
+        Map<String, Integer> urls = new HashMap<>();
+        for (String className : detected) {
+            urls.merge(ParamsSeparator.url(className), 1, Integer::sum);
+        }
+        for (String className : configuredSet) {
+            urls.merge(ParamsSeparator.url(className), 1, Integer::sum);
+        }
+        detected.removeIf(className -> urls.get(ParamsSeparator.url(className)) > 1);
+        detected.sort(Comparator.<String>comparingInt(className -> blocks.get(className).lines)
+                .thenComparing(Comparator.naturalOrder()));
+
+        List<String> selected = new ArrayList<>(detected);
+        for (String className : configuredSet) {
+            Block block = blocks.get(className);
+            if (block != null && block.lines < linesThreshold) {
+                LOG.warning(className + " has " + block.lines + " lines, fewer than " + linesThreshold
+                        + ", and is not separated");
+            } else {
+                selected.add(className);
+            }
+        }
+        LOG.info("Separating " + detected.size() + " repeated parameter classes out of " + blocks.size()
+                + " documented, and " + (selected.size() - detected.size()) + " configured ones");
+        return innerFirst(selected);
+    }
+
+    /**
+     * Orders classes so that each comes after the classes documented in its blocks, keeping their order otherwise.
+     * Classes documented in each other's blocks, in different pages, keep their order.
+     */
+    private List<String> innerFirst(List<String> classNames) {
+        List<String> remaining = new ArrayList<>(classNames);
+        List<String> ordered = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            int next = 0;
+            for (int i = 0; i < remaining.size(); i++) {
+                Set<String> inner = nested.getOrDefault(remaining.get(i), Set.of());
+                if (remaining.stream().noneMatch(inner::contains)) {
+                    next = i;
+                    break;
+                }
+            }
+            ordered.add(remaining.remove(next));
+        }
+        return ordered;
+    }
+
+    private static int occurrences(String line, String tag) {
+        int count = 0;
+        for (int i = line.indexOf(tag); i >= 0; i = line.indexOf(tag, i + tag.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
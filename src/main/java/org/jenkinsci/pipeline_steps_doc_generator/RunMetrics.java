@@ -0,0 +1,313 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Wall time, allocated bytes and output size of the phases of a run, and of each plugin, descriptor and directive
+ * handled in them, reported in a JSON file at the end of the run.
+ * <p>
+ * Phases count the bytes allocated by all threads, since plugins boot and pages render on several of them, while
+ * plugins, descriptors and directives count the bytes allocated by the thread handling them, and by the workers it
+ * hands their extraction to. Allocated bytes are {@code -1} where the JVM does not measure them, which is the case
+ * of phases before Java 21.
+ */
+final class RunMetrics {
+    static final int VERSION = 1;
+    private static final int SLOWEST = 25;
+
+    /**
+     * Allocations by all threads since the start of the JVM, dead ones included, available from Java 21.
+     */
+    @CheckForNull
+    private static final MethodHandle TOTAL_ALLOCATED_BYTES = totalAllocatedBytesHandle();
+
+    enum Kind {
+        PHASE,
+        MILESTONE,
+        PLUGIN,
+        DESCRIPTOR,
+        DIRECTIVE
+    }
+
+    record Entry(Kind kind, String name, long nanos, long allocatedBytes, long outputBytes) {
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("name", name)
+                    .put("millis", TimeUnit.NANOSECONDS.toMillis(nanos))
+                    .put("allocatedBytes", allocatedBytes)
+                    .put("outputBytes", outputBytes);
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final Queue<JSONObject> timeouts = new ConcurrentLinkedQueue<>();
+    private final Map<String, JSONObject> pages = new ConcurrentSkipListMap<>();
+    private volatile long lastMilestone = start;
+    private volatile long lastMilestoneAllocated = totalAllocatedBytes();
+    /** Plugins, descriptors and directives being measured on each thread. */
+    private final ThreadLocal<Deque<Timer>> open = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Measures a phase, a plugin, a descriptor or a directive, from its creation to its closing, on the thread
+     * creating it.
+     */
+    final class Timer implements AutoCloseable {
+        private final Kind kind;
+        private final String name;
+        private final long started = System.nanoTime();
+        private final long allocated;
+        private long allocatedByWorkers;
+        private long outputBytes = -1;
+
+        private Timer(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+            this.allocated = allocatedBytes(kind);
+            if (kind == Kind.PHASE) {
+                lastMilestone = started;
+                lastMilestoneAllocated = allocated;
+            } else {
+                open.get().push(this);
+            }
+        }
+
+        /**
+         * Records the size of what was written.
+         */
+        void output(long bytes) {
+            outputBytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            long after = allocatedBytes(kind);
+            if (kind != Kind.PHASE) {
+                open.get().remove(this);
+            }
+            entries.add(new Entry(
+                    kind,
+                    name,
+                    System.nanoTime() - started,
+                    after < 0 || allocated < 0 ? -1 : after - allocated + allocatedByWorkers,
+                    outputBytes));
+        }
+    }
+
+    Timer phase(String name) {
+        return new Timer(Kind.PHASE, name);
+    }
+
+    Timer plugin(String name) {
+        return new Timer(Kind.PLUGIN, name);
+    }
+
+    Timer descriptor(String name) {
+        return new Timer(Kind.DESCRIPTOR, name);
+    }
+
+    Timer directive(String name) {
+        return new Timer(Kind.DIRECTIVE, name);
+    }
+
+    /**
+     * Counts the bytes allocated by a worker thread on behalf of the current thread, in the plugins, descriptors and
+     * directives it is measuring.
+     *
+     * @param bytes as measured by {@link #threadAllocatedBytes()} on the worker, ignored if {@code -1}
+     */
+    void allocatedByWorker(long bytes) {
+        if (bytes > 0) {
+            for (Timer timer : open.get()) {
+                timer.allocatedByWorkers += bytes;
+            }
+        }
+    }
+
+    /**
+     * Records a milestone reached, since the previous one or the start of the latest phase.
+     */
+    synchronized void milestone(String name) {
+        long now = System.nanoTime();
+        long allocated = totalAllocatedBytes();
+        entries.add(new Entry(
+                Kind.MILESTONE,
+                name,
+                now - lastMilestone,
+                allocated < 0 || lastMilestoneAllocated < 0 ? -1 : allocated - lastMilestoneAllocated,
+                -1));
+        lastMilestone = now;
+        lastMilestoneAllocated = allocated;
+    }
+
+    /**
+     * Records a descriptor whose extraction timed out.
+     *
+     * @param stack what the extraction was running when it timed out
+     */
+    void timeout(String descriptor, String stack) {
+        timeouts.add(new JSONObject().put("name", descriptor).put("stack", stack));
+    }
+
+    int getTimeouts() {
+        return timeouts.size();
+    }
+
+    /**
+     * Records the pages of an output folder changed by the run, as listed by {@link PageChanges#finish()}.
+     */
+    void pages(String folder, JSONObject changes) {
+        pages.put(folder, changes);
+    }
+
+    List<Entry> getEntries(Kind kind) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.kind() == kind) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private List<Entry> getSummedEntries(Kind kind) {
+        Map<String, Entry> summed = new LinkedHashMap<>();
+        for (Entry entry : getEntries(kind)) {
+            summed.merge(
+                    entry.name(),
+                    entry,
+                    (a, b) -> new Entry(
+                            kind,
+                            a.name(),
+                            a.nanos() + b.nanos(),
+                            a.allocatedBytes() < 0 || b.allocatedBytes() < 0
+                                    ? -1
+                                    : a.allocatedBytes() + b.allocatedBytes(),
+                            Math.max(a.outputBytes(), b.outputBytes())));
+        }
+        return new ArrayList<>(summed.values());
+    }
+
+    /**
+     * Lists the phases, milestones and directives in the order they ended, the slowest plugins and descriptors, the
+     * descriptors which timed out, and the pages changed in each output folder.
+     * A plugin or directive extracted and rendered separately, or a descriptor extracted again, is listed once with
+     * the sum of its measures.
+     */
+    JSONObject toJson() {
+        JSONObject json = new JSONObject()
+                .put("version", VERSION)
+                .put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .put("phases", toJson(getEntries(Kind.PHASE), false))
+                .put("milestones", toJson(getEntries(Kind.MILESTONE), false))
+                .put("directives", toJson(getSummedEntries(Kind.DIRECTIVE), false));
+        for (Kind kind : List.of(Kind.PLUGIN, Kind.DESCRIPTOR)) {
+            List<Entry> all = getSummedEntries(kind);
+            String name = kind == Kind.PLUGIN ? "Plugins" : "Descriptors";
+            json.put("count" + name, all.size())
+                    .put("millis" + name, TimeUnit.NANOSECONDS.toMillis(all.stream()
+                            .mapToLong(Entry::nanos)
+                            .sum()))
+                    .put("slowest" + name, toJson(all, true));
+        }
+        return json.put("timeouts", new JSONArray(timeouts)).put("pages", new JSONObject(pages));
+    }
+
+    private static JSONArray toJson(List<Entry> entries, boolean slowest) {
+        List<Entry> listed = entries;
+        if (slowest) {
+            listed = entries.stream()
+                    .sorted(Comparator.comparingLong(Entry::nanos).reversed())
+                    .limit(SLOWEST)
+                    .toList();
+        }
+        JSONArray array = new JSONArray();
+        for (Entry entry : listed) {
+            array.put(entry.toJson());
+        }
+        return array;
+    }
+
+    void write(Path file) throws IOException {
+        Files.writeString(file, toJson().toString(2), StandardCharsets.UTF_8);
+    }
+
+    private static long allocatedBytes(Kind kind) {
+        return kind == Kind.PHASE ? totalAllocatedBytes() : threadAllocatedBytes();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or {@code -1} where the JVM does not measure them
+     */
+    static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemoryEnabled()) {
+            return sun.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long totalAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (TOTAL_ALLOCATED_BYTES != null
+                && threads instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemoryEnabled()) {
+            try {
+                return (long) TOTAL_ALLOCATED_BYTES.invokeExact(threads);
+            } catch (Throwable ex) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    @CheckForNull
+    private static MethodHandle totalAllocatedBytesHandle() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(
+                            com.sun.management.ThreadMXBean.class,
+                            "getTotalThreadAllocatedBytes",
+                            MethodType.methodType(long.class))
+                    .asType(MethodType.methodType(long.class, ThreadMXBean.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return null; // before Java 21
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner summary = new StringJoiner(", ", "phases: ", "");
+        summary.setEmptyValue("no phases");
+        for (Entry phase : getEntries(Kind.PHASE)) {
+            summary.add(phase.name() + " " + TimeUnit.NANOSECONDS.toMillis(phase.nanos()) + " ms");
+        }
+        if (!timeouts.isEmpty()) {
+            return summary + "; " + timeouts.size() + " descriptors timed out";
+        }
+        return summary.toString();
+    }
+}
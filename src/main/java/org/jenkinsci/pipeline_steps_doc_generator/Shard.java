@@ -0,0 +1,34 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+/**
+ * One of the runs among which plugins are split, given as {@code i/N} with {@code i} from 0 to {@code N - 1}.
+ * Plugins are assigned by the hash of their name, so that every run agrees on the assignment whatever plugins it
+ * loads.
+ */
+record Shard(int index, int count) {
+    Shard {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Shard " + index + "/" + count + " does not exist");
+        }
+    }
+
+    static Shard parse(String shard) {
+        String[] parts = shard.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected a shard as i/N, got " + shard);
+        }
+        return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+    }
+
+    /**
+     * @return whether the pages of a plugin, or its sections of Declarative directives, are extracted by this shard
+     */
+    boolean owns(String plugin) {
+        return Math.floorMod(plugin.hashCode(), count) == index;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
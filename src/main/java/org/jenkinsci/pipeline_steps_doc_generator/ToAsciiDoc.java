@@ -1,182 +1,138 @@
 package org.jenkinsci.pipeline_steps_doc_generator;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import hudson.Main;
 import hudson.model.Descriptor;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.Arrays;
+import java.io.Writer;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.Stack;
 import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import org.jenkinsci.plugins.structs.SymbolLookup;
-import org.jenkinsci.plugins.structs.describable.ArrayType;
-import org.jenkinsci.plugins.structs.describable.AtomicType;
-import org.jenkinsci.plugins.structs.describable.DescribableModel;
-import org.jenkinsci.plugins.structs.describable.DescribableParameter;
-import org.jenkinsci.plugins.structs.describable.EnumType;
-import org.jenkinsci.plugins.structs.describable.ErrorType;
-import org.jenkinsci.plugins.structs.describable.HeterogeneousObjectType;
-import org.jenkinsci.plugins.structs.describable.HomogeneousObjectType;
 import org.jenkinsci.plugins.structs.describable.ParameterType;
-import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Safelist;
-import org.kohsuke.stapler.NoStaplerConstructorException;
-import org.kohsuke.stapler.lang.Klass;
 
 public class ToAsciiDoc {
-    private static final Logger LOG = Logger.getLogger(ToAsciiDoc.class.getName());
-    private static final Map<String, String> typeDescriptions = new HashMap<>();
     public static final String ARRAY_LIST_OF = "Array / List of ";
     public static final String BUILD_STEP_DESCRIPTION = "Build Step (<code>hudson.tasks.BuildStep</code>)";
-
-    static {
-        typeDescriptions.put("java.lang.Object", "<code>Object</code>");
-        typeDescriptions.put("java.util.List<java.lang.Object>", ARRAY_LIST_OF + "<code>Object</code>");
-        typeDescriptions.put("hudson.tasks.BuildStep", BUILD_STEP_DESCRIPTION);
-        typeDescriptions.put("java.util.List<hudson.tasks.BuildStep>", ARRAY_LIST_OF + BUILD_STEP_DESCRIPTION);
-    }
-    /**
-     * Keeps track of nested {@link DescribableModel#getType()} to avoid recursion.
-     */
-    private static Stack<Class<?>> nesting = new Stack<>();
+    private static final int CHUNK = 8192;
+    private static final Safelist SAFELIST = Safelist.relaxed().addEnforcedAttribute("a", "rel", "nofollow");
+    /** 16 MB, a few thousand distinct help texts of a few kilobytes each, with their sanitized forms. */
+    private static final HelpCache HELP_CACHE = new HelpCache(16L * 1024 * 1024);
+    private static final FailureLog FAILURES = new FailureLog();
 
     /** Asciidoc conversion functions. **/
     private static String header(int depth) {
         return String.join("", Collections.nCopies(depth, "="));
     }
 
-    private static String helpify(String help) {
-        return "<div>" + Jsoup.clean(help, Safelist.relaxed().addEnforcedAttribute("a", "rel", "nofollow"))
-                + "</div>\n";
+    static String helpify(String help) {
+        return HELP_CACHE.get(help, ToAsciiDoc::sanitize);
+    }
+
+    static String sanitize(String help) {
+        return "<div>" + Jsoup.clean(help, SAFELIST) + "</div>\n";
+    }
+
+    /**
+     * Help texts sanitized so far, shared by all renderings.
+     */
+    public static HelpCache getHelpCache() {
+        return HELP_CACHE;
+    }
+
+    /**
+     * Failures met so far while extracting and rendering, shared by all renderings.
+     */
+    public static FailureLog getFailures() {
+        return FAILURES;
     }
 
     static String describeType(ParameterType type, String prefix) throws Exception {
+        return describeType(new RenderContext(), new ModelExtractor().type(type), prefix);
+    }
+
+    static String describeType(RenderContext context, ModelSnapshot.Type type, String prefix) throws Exception {
         StringBuilder typeInfo = new StringBuilder();
-        if (type instanceof EnumType enumType) {
-            typeInfo.append("<li><b>")
-                    .append(prefix)
-                    .append("Values:</b> ")
-                    .append(Arrays.stream((enumType.getValues()))
-                            .map(v -> "<code>" + v + "</code>")
-                            .collect(Collectors.joining(", ")))
-                    .append("</li>");
-        } else if (type instanceof ArrayType arrayType) {
-            type = arrayType.getElementType();
-            if (!(type instanceof AtomicType)) {
-                typeInfo.append(describeType(type, ARRAY_LIST_OF + prefix));
+        appendType(context, typeInfo, type, prefix);
+        return typeInfo.toString();
+    }
+
+    private static void appendType(
+            RenderContext context, StringBuilder typeInfo, ModelSnapshot.Type type, String prefix) throws Exception {
+        if (type instanceof ModelSnapshot.EnumValues enumType) {
+            typeInfo.append("<li><b>").append(prefix).append("Values:</b> ");
+            String separator = "";
+            for (String value : enumType.values()) {
+                typeInfo.append(separator).append("<code>").append(value).append("</code>");
+                separator = ", ";
+            }
+            typeInfo.append("</li>");
+        } else if (type instanceof ModelSnapshot.ArrayOf arrayType) {
+            type = arrayType.element();
+            if (!(type instanceof ModelSnapshot.Atomic)) {
+                appendType(context, typeInfo, type, ARRAY_LIST_OF + prefix);
             }
-        } else if (type instanceof HomogeneousObjectType objectType) {
-            typeInfo.append("<b>")
-                    .append(prefix)
-                    .append("Nested Object</b>\n")
-                    // TODO may need to note a symbol if present
-                    .append(generateHelp(objectType.getSchemaType(), false));
-        } else if (type instanceof HeterogeneousObjectType objectType) {
+        } else if (type instanceof ModelSnapshot.NestedObject objectType) {
+            typeInfo.append("<b>").append(prefix).append("Nested Object</b>\n");
+            // TODO may need to note a symbol if present
+            appendHelp(context, typeInfo, objectType.model(), false);
+        } else if (type instanceof ModelSnapshot.NestedChoice objectType) {
             typeInfo.append("<b>").append(prefix).append("Nested Choice of Objects</b>\n");
-            if (objectType.getType() != Object.class) {
-                for (Map.Entry<String, DescribableModel<?>> entry :
-                        objectType.getTypes().entrySet()) {
-                    Set<String> symbols =
-                            SymbolLookup.getSymbolValue(entry.getValue().getType());
-                    String symbol = symbols.isEmpty()
-                            ? DescribableModel.CLAZZ + ": '" + entry.getKey() + "'"
-                            : symbols.iterator().next();
-                    typeInfo.append("<li><code>")
-                            .append(symbol)
-                            .append("</code><div>\n")
-                            .append(generateHelp(entry.getValue(), true))
-                            .append("</div></li>\n");
+            if (objectType.baseType() != null) {
+                context.choice(objectType.baseType());
+                for (ModelSnapshot.Choice choice : objectType.choices().get()) {
+                    typeInfo.append("<li><code>").append(choice.symbol().get()).append("</code><div>\n");
+                    appendHelp(context, typeInfo, choice.model(), true);
+                    typeInfo.append("</div></li>\n");
                 }
             }
-        } else if (type instanceof ErrorType errorType) { // Shouldn't hit this; open a ticket
-            Exception x = errorType.getError();
-            LOG.log(Level.FINE, "Encountered ErrorType object with exception:" + x);
-            if (x instanceof NoStaplerConstructorException || x instanceof UnsupportedOperationException) {
+        } else if (type instanceof ModelSnapshot.Unsupported errorType) { // Shouldn't hit this; open a ticket
+            if (errorType.listed()) {
                 typeInfo.append("<li><b>Type:</b> <code>")
-                        .append(describeErrorType(type))
+                        .append(errorType.text())
                         .append("</code></li>\n");
             } else {
-                typeInfo.append("<code>").append(x).append("</code>\n");
+                typeInfo.append("<code>").append(errorType.text()).append("</code>\n");
             }
         } else {
             assert false : type;
         }
-        return typeInfo.toString();
     }
 
-    private static String describeErrorType(ParameterType type) {
-        return type.getActualType()
-                .toString()
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#39;");
-    }
-
-    private static String generateAttrHelp(DescribableParameter param) throws Exception {
-        StringBuilder attrHelp = new StringBuilder();
-        String help = param.getHelp();
+    private static void appendAttrHelp(RenderContext context, StringBuilder attrHelp, ModelSnapshot.Param param)
+            throws Exception {
+        String help = param.help().get();
         if (help != null && !help.equals("")) {
             attrHelp.append(helpify(help)).append("\n");
         }
+        int mark = attrHelp.length();
         try {
-            String typeDesc;
-            String rawTypeDesc = typeDescriptions.get(param.getRawType().getTypeName());
-            if (rawTypeDesc == null) {
-                ParameterType type = param.getType();
-                if (!(type instanceof AtomicType)) {
-                    typeDesc = describeType(type, "");
-                    attrHelp.append("<ul>").append(typeDesc).append("</ul>");
-                }
+            if (param.type() != null) {
+                attrHelp.append("<ul>");
+                appendType(context, attrHelp, param.type().get(), "");
+                attrHelp.append("</ul>");
             }
         } catch (RuntimeException | Error ex) {
-            LOG.log(Level.WARNING, "Restricted description of attribute " + param.getName(), ex);
+            attrHelp.setLength(mark);
+            FAILURES.failed(Level.WARNING, "Restricted description of attribute " + param.name(), ex);
         }
-        return attrHelp.toString();
     }
 
-    private static String getTypeDescription(DescribableParameter param) throws Exception {
-        String typeDesc = "";
-        try {
-            String rawTypeDesc = typeDescriptions.get(param.getRawType().getTypeName());
-            if (rawTypeDesc != null) {
-                typeDesc = " : " + rawTypeDesc;
-            } else {
-                ParameterType type = param.getType();
-                if (type instanceof AtomicType) {
-                    typeDesc = " : " + type;
-                } else if (type instanceof ArrayType arrayType) {
-                    type = arrayType.getElementType();
-                    if (type instanceof AtomicType) {
-                        typeDesc = " : " + ARRAY_LIST_OF + type;
-                    }
-                }
-            }
-        } catch (RuntimeException | Error ex) {
-            LOG.log(Level.WARNING, "Restricted description of attribute " + param.getName(), ex);
-        }
-        return typeDesc;
-    }
-
-    private static String generateHelp(DescribableModel<?> model, boolean indent) throws Exception {
-        if (nesting.contains(model.getType())) return ""; // if we are recursing, cut the search
-        nesting.push(model.getType());
+    /**
+     * Appends the documentation of a model. If this fails, what was appended is left for the caller to discard.
+     */
+    private static void appendHelp(
+            RenderContext context, StringBuilder total, ModelSnapshot.Model model, boolean indent) throws Exception {
+        if (!context.enter(model.type)) return; // if we are recursing, cut the search
 
-        StringBuilder total = new StringBuilder();
         try {
-            String help = model.getHelp();
+            String cached = context.cached(indent);
+            if (cached != null) {
+                total.append(cached);
+                return;
+            }
+            int start = total.length();
+            String help = model.help.get();
             if (help != null && !help.equals("")) {
                 total.append(helpify(help));
             }
@@ -184,37 +140,30 @@ public class ToAsciiDoc {
             if (indent) {
                 total.append("<ul>");
             }
-            StringBuilder optionalParams = new StringBuilder();
-            // for(DescribableParameter p : model.getParameters()){
-            for (Object o : model.getParameters()) {
-                DescribableParameter p = (DescribableParameter) o;
-                if (p.isRequired()) {
+            for (ModelSnapshot.Param p : model.params) {
+                if (p.required()) {
+                    total.append("<li><code>").append(p.name()).append(p.typeDescription()).append("</code>\n");
+                    appendAttrHelp(context, total, p);
+                    total.append("</li>\n");
+                }
+            }
+            for (ModelSnapshot.Param p : model.params) {
+                if (!p.required()) {
                     total.append("<li><code>")
-                            .append(p.getName())
-                            .append(getTypeDescription(p))
-                            .append("</code>")
-                            .append("\n")
-                            .append(generateAttrHelp(p))
-                            .append("</li>\n");
-                } else {
-                    optionalParams
-                            .append("<li><code>")
-                            .append(p.getName())
-                            .append(getTypeDescription(p))
-                            .append("</code> (optional)")
-                            .append("\n")
-                            .append(generateAttrHelp(p))
-                            .append("</li>\n");
+                            .append(p.name())
+                            .append(p.typeDescription())
+                            .append("</code> (optional)\n");
+                    appendAttrHelp(context, total, p);
+                    total.append("</li>\n");
                 }
             }
-            total.append(optionalParams.toString());
             if (indent) {
                 total.append("</ul>");
             }
+            context.store(indent, total.substring(start));
         } finally {
-            nesting.pop();
+            context.exit(model.type);
         }
-        return total.toString();
     }
 
     /**
@@ -222,95 +171,99 @@ public class ToAsciiDoc {
      * For delegate steps adds example without Symbol.
      */
     public static String generateStepHelp(QuasiDescriptor d) {
-        StringBuilder mkDesc =
-                new StringBuilder(header(3)).append(" `").append(d.getSymbol()).append("`: ");
-        mkDesc.append(getDisplayName(d.real)).append("\n++++\n");
+        return generateStepHelp(new RenderContext(), new ModelExtractor().step(d));
+    }
+
+    /**
+     * Generate documentation for a plugin step within the given rendering.
+     */
+    public static String generateStepHelp(RenderContext context, ModelSnapshot.Step d) {
+        StringBuilder mkDesc = new StringBuilder();
+        appendStepHelp(context, mkDesc, d);
+        return mkDesc.toString();
+    }
+
+    private static void appendStepHelp(RenderContext context, StringBuilder mkDesc, ModelSnapshot.Step d) {
+        mkDesc.append(header(3)).append(" `").append(d.symbol().getUnchecked()).append("`: ");
+        mkDesc.append(d.displayName()).append("\n++++\n");
+        int mark = mkDesc.length();
         try {
-            Optional<Descriptor<?>> delegateExample = PipelineStepExtractor.getMetaDelegates(d.real)
-                    .filter(sub -> SymbolLookup.getSymbolValue(sub.clazz).isEmpty())
-                    .findFirst();
-            if (delegateExample.isPresent()) {
-                mkDesc.append(getHelp("help.html", d.real.clazz));
-                String symbol = new QuasiDescriptor(delegateExample.get(), (StepDescriptor) d.real).getSymbol();
+            if (d.delegated().get()) {
+                mkDesc.append(d.help().get());
+                mark = mkDesc.length();
+                String symbol = d.delegateSymbol().get();
                 mkDesc.append("To use this step you need to specify a delegate class, e.g <code>%s</code>."
                         .formatted(symbol));
             } else {
-                appendSimpleStepDescription(mkDesc, d.real.clazz);
+                appendSimpleStepDescription(context, mkDesc, d);
             }
         } catch (Exception | Error ex) {
+            mkDesc.setLength(mark);
             mkDesc.append("<code>").append(ex).append("</code>");
-            LOG.log(Level.SEVERE, "Description of " + d.real.clazz + " skipped, encountered ", ex);
-        }
-        return mkDesc.append("\n\n\n++++\n").toString();
-    }
-
-    private static String getDisplayName(Descriptor<?> d) {
-        try {
-            return d.getDisplayName();
-        } catch (Exception | Error e) {
-            LOG.log(Level.WARNING, "Cannot get display name of " + d.clazz, e);
+            FAILURES.failed(Level.SEVERE, "Description of " + d.type() + " skipped", ex);
         }
-        return "(no description)";
+        mkDesc.append("\n\n\n++++\n");
     }
 
-    private static void appendSimpleStepDescription(StringBuilder mkDesc, Class<?> clazz) throws IOException {
+    private static void appendSimpleStepDescription(RenderContext context, StringBuilder mkDesc, ModelSnapshot.Step d)
+            throws Exception {
+        int mark = mkDesc.length();
         try {
-            mkDesc.append(generateHelp(new DescribableModel<>(clazz), true));
+            appendHelp(context, mkDesc, d.model().get(), true);
         } catch (Exception ex) {
-            mkDesc.append(getHelp("help.html", clazz));
-            LOG.log(Level.WARNING, "Description of " + clazz + " restricted, encountered ", ex);
+            mkDesc.setLength(mark);
+            mkDesc.append(d.help().get());
+            FAILURES.failed(Level.WARNING, "Description of " + d.type() + " restricted", ex);
         }
     }
 
-    /**
-     * Copy of {@link DescribableModel#getHelp()}, used in case DescribableModel can't be instantiated.
-     * @param name resource name
-     * @param type class
-     * @return file content
-     * @throws IOException if file can't be read
-     */
-    @SuppressFBWarnings(value = "URLCONNECTION_SSRF_FD", justification = "URL comes from a safe source")
-    static String getHelp(String name, Class<?> type) throws IOException {
-        for (Klass<?> c = Klass.java(type); c != null; c = c.getSuperClass()) {
-            URL u = c.getResource(name);
-            if (u != null) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(u.openStream()))) {
-                    return br.lines().collect(Collectors.joining("\n"));
-                }
-            }
-        }
-        return null;
-    }
-
     /**
      * Generate documentation for a {@link Descriptor}
      */
-    private static String generateDescribableHelp(Descriptor<?> d) {
-        if (d instanceof StepDescriptor) {
-            return generateStepHelp(new QuasiDescriptor(d, null));
+    private static void appendDescribableHelp(RenderContext context, StringBuilder mkDesc, ModelSnapshot.Step d) {
+        if (!d.describable()) {
+            appendStepHelp(context, mkDesc, d);
         } else {
-            Set<String> symbols = SymbolLookup.getSymbolValue(d);
-            if (!symbols.isEmpty()) {
-                StringBuilder mkDesc = new StringBuilder(header(3))
-                        .append(" `")
-                        .append(symbols.iterator().next())
-                        .append("`: ");
-                mkDesc.append(getDisplayName(d)).append("\n");
+            String symbol = d.symbol().getUnchecked();
+            if (symbol != null) {
+                mkDesc.append(header(3)).append(" `").append(symbol).append("`: ");
+                mkDesc.append(d.displayName()).append("\n");
+                int mark = mkDesc.length();
                 try {
-                    mkDesc.append(generateHelp(new DescribableModel<>(d.clazz), true))
-                            .append("\n\n");
+                    appendHelp(context, mkDesc, d.model().get(), true);
+                    mkDesc.append("\n\n");
                 } catch (Exception | Error ex) {
-                    LOG.log(Level.SEVERE, "Problem generating help for descriptor", ex);
+                    mkDesc.setLength(mark);
+                    FAILURES.failed(Level.SEVERE, "Problem generating help for descriptor " + d.type(), ex);
                     // backtick-plus for safety - monospace literal string
                     mkDesc.append("`+").append(ex).append("+`\n\n");
                 }
-                return mkDesc.toString();
             } else {
-                return null;
+                mkDesc.append((String) null); // pages have always shown "null" here
             }
         }
     }
 
+    /**
+     * Moves the documentation rendered into a buffer to the output, unless the buffer is the output itself.
+     */
+    private static void flush(StringBuilder buffer, Appendable out, char[] chunk) throws IOException {
+        if (buffer == out) {
+            return;
+        }
+        if (out instanceof Writer writer) {
+            // Writer.append(CharSequence) would copy the whole buffer into a String first
+            for (int i = 0; i < buffer.length(); i += chunk.length) {
+                int end = Math.min(buffer.length(), i + chunk.length);
+                buffer.getChars(i, end, chunk, 0);
+                writer.write(chunk, 0, end - i);
+            }
+        } else {
+            out.append(buffer);
+        }
+        buffer.setLength(0);
+    }
+
     /**
      * Creates a header for use in JenkinsIO and other awestruct applications.
      */
@@ -336,55 +289,96 @@ public class ToAsciiDoc {
             Map<String, List<QuasiDescriptor>> byPlugin,
             boolean isDeprecated,
             boolean genHeader) {
-        Main.isUnitTest = true;
+        return generatePluginHelp(
+                new RenderContext(),
+                new ModelExtractor().plugin(pluginName, displayName, byPlugin, isDeprecated),
+                genHeader);
+    }
 
-        // TODO: if condition
+    /**
+     * Generate help documentation for an entire plugin within the given rendering.
+     *
+     * @return String  total documentation for the page
+     */
+    public static String generatePluginHelp(RenderContext context, ModelSnapshot.Plugin plugin, boolean genHeader) {
         StringBuilder whole9yards = new StringBuilder();
+        try {
+            writePluginHelp(context, plugin, genHeader, whole9yards);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        return whole9yards.toString();
+    }
+
+    /**
+     * Writes help documentation for an entire plugin within the given rendering.
+     * Only the step being rendered is held in memory, the page is written out step by step.
+     */
+    public static void writePluginHelp(
+            RenderContext context, ModelSnapshot.Plugin plugin, boolean genHeader, Appendable out)
+            throws IOException {
+        // TODO: if condition
         if (genHeader) {
-            whole9yards.append(generateHeader(displayName));
+            out.append(generateHeader(plugin.displayName()));
         }
 
-        whole9yards
-                .append("== ")
-                .append(displayName)
-                .append(isDeprecated ? " (deprecated)" : "")
+        out.append("== ")
+                .append(plugin.displayName())
+                .append(plugin.deprecated() ? " (deprecated)" : "")
                 .append("\n\n");
-        if (!"core".equals(pluginName)) {
-            whole9yards.append("plugin:").append(pluginName).append("[View this plugin on the Plugins site]\n\n");
+        if (!"core".equals(plugin.name())) {
+            out.append("plugin:").append(plugin.name()).append("[View this plugin on the Plugins site]\n\n");
         }
-        for (String type : byPlugin.keySet()) {
-            for (QuasiDescriptor sd : byPlugin.get(type)) {
-                whole9yards.append(generateStepHelp(sd));
+        StringBuilder step = out instanceof StringBuilder whole9yards ? whole9yards : new StringBuilder();
+        char[] chunk = new char[CHUNK];
+        for (ModelSnapshot.Section section : plugin.sections()) {
+            for (ModelSnapshot.Step sd : section.steps()) {
+                appendStepHelp(context, step, sd);
+                flush(step, out, chunk);
             }
         }
-        return whole9yards.toString();
     }
 
     public static String generateDirectiveHelp(
             String directiveName, Map<String, List<Descriptor>> descsByPlugin, boolean genHeader) {
-        Main.isUnitTest = true;
+        return generateDirectiveHelp(
+                new RenderContext(), new ModelExtractor().directive(directiveName, descsByPlugin), genHeader);
+    }
+
+    public static String generateDirectiveHelp(
+            RenderContext context, ModelSnapshot.Directive directive, boolean genHeader) {
         StringBuilder whole9yards = new StringBuilder();
+        try {
+            writeDirectiveHelp(context, directive, genHeader, whole9yards);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        return whole9yards.toString();
+    }
+
+    /**
+     * Writes help documentation for a Declarative directive within the given rendering, step by step.
+     */
+    public static void writeDirectiveHelp(
+            RenderContext context, ModelSnapshot.Directive directive, boolean genHeader, Appendable out)
+            throws IOException {
         if (genHeader) {
-            whole9yards.append(generateHeader(directiveName));
+            out.append(generateHeader(directive.name()));
         }
-        whole9yards.append("== ").append(directiveName).append("\n\n");
-        for (Map.Entry<String, List<Descriptor>> entry : descsByPlugin.entrySet()) {
-            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
-                String pluginName = entry.getKey();
-                if (pluginName.equals("core")) {
-                    whole9yards.append("Jenkins Core:\n\n");
-                } else {
-                    whole9yards
-                            .append("plugin:")
-                            .append(pluginName)
-                            .append("[View this plugin on the Plugins Index]\n\n");
-                }
-                for (Descriptor<?> d : entry.getValue()) {
-                    whole9yards.append(generateDescribableHelp(d));
-                }
+        out.append("== ").append(directive.name()).append("\n\n");
+        StringBuilder step = out instanceof StringBuilder whole9yards ? whole9yards : new StringBuilder();
+        char[] chunk = new char[CHUNK];
+        for (ModelSnapshot.Section section : directive.sections()) {
+            String pluginName = section.name();
+            if (pluginName.equals("core")) {
+                out.append("Jenkins Core:\n\n");
+            } else {
+                out.append("plugin:").append(pluginName).append("[View this plugin on the Plugins Index]\n\n");
+            }
+            for (ModelSnapshot.Step d : section.steps()) {
+                appendDescribableHelp(context, step, d);
+                flush(step, out, chunk);
             }
         }
-
-        return whole9yards.toString();
     }
 }
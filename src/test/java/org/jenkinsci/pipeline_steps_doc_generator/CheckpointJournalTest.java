@@ -0,0 +1,73 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointJournalTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void completedPagesAreResumed() throws Exception {
+        Path dir = tmp.getRoot().toPath();
+        Path file = dir.resolve("checkpoint.jsonl");
+        Path done = Files.writeString(dir.resolve("done.adoc"), "done");
+        Path edited = Files.writeString(dir.resolve("edited.adoc"), "edited");
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "generator", false)) {
+            journal.record(CheckpointJournal.PLUGIN, "done", done, new JSONObject().put("deprecated", true));
+            journal.record(CheckpointJournal.PLUGIN, "edited", edited, new JSONObject());
+        }
+        Files.writeString(edited, "edited again");
+        Files.writeString(file, "{\"kind\":\"plugin\",\"na", StandardOpenOption.APPEND); // killed while writing
+
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "generator", true)) {
+            JSONObject resumed = journal.completed(CheckpointJournal.PLUGIN, "done", done);
+            assertThat(resumed, notNullValue());
+            assertThat(resumed.getBoolean("deprecated"), is(true));
+            assertThat(journal.completed(CheckpointJournal.PLUGIN, "edited", edited), nullValue());
+        }
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "generator", true)) {
+            assertThat(journal.completed(CheckpointJournal.PLUGIN, "done", done), notNullValue()); // recorded again
+        }
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "other generator", true)) {
+            assertThat(journal.completed(CheckpointJournal.PLUGIN, "done", done), nullValue());
+        }
+    }
+
+    @Test
+    public void processedPagesAreNotProcessedAgain() throws Exception {
+        List<String> classNames = Arrays.asList("$class: 'GitSCM'", "$class: 'MultiSCM'");
+        Path dir = tmp.newFolder("allAscii").toPath();
+        Files.createDirectory(dir.resolve("params"));
+        Path page = dir.resolve("workflow-scm.adoc");
+        Files.copy(Path.of("src/test/resources/input/workflow-scm.adoc"), page);
+        Path file = tmp.getRoot().toPath().resolve("checkpoint.jsonl");
+        ProcessAsciiDoc pad = new ProcessAsciiDoc();
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "generator", false)) {
+            pad.processDocs(dir.toString(), 100, classNames, journal);
+        }
+        String processed = Files.readString(page);
+        Files.delete(dir.resolve("params/gitscm.adoc"));
+
+        try (CheckpointJournal journal = CheckpointJournal.open(file, "generator", true)) {
+            JSONObject extracts = journal.get(CheckpointJournal.PROCESSED, "workflow-scm.adoc")
+                    .getJSONObject("params");
+            assertThat(extracts.has("gitscm"), is(true));
+            pad.processDocs(dir.toString(), 100, classNames, journal);
+        }
+        assertThat(Files.readString(page), is(processed));
+        assertThat(Files.exists(dir.resolve("params/gitscm.adoc")), is(false));
+    }
+}
@@ -0,0 +1,51 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeprecatedPluginsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void readsDeprecationKeysOnly() {
+        String json = "{\"connectionCheckUrl\": \"https://www.google.com/\", \"core\": {\"name\": \"core\","
+                + " \"url\": \"x\\\"}{\"}, \"id\": 1.5e3, \"signed\": true, \"warnings\": [{\"id\": [1, null]}],"
+                + " \"deprecations\": {\"foo\": {\"url\": \"https://example.com/\"}, \"bar\": {}},"
+                + " \"plugins\": {\"deprecations\": {\"baz\": {}}}}";
+        assertThat(DeprecatedPlugins.parse(new StringReader(json)), is(Set.of("bar", "foo")));
+    }
+
+    @Test
+    public void noDeprecations() {
+        assertThat(DeprecatedPlugins.parse(new StringReader("{\"plugins\": {}, \"id\": null}")), is(empty()));
+    }
+
+    @Test
+    public void cacheIsRefreshedOnceOlderThanItsMaxAge() throws Exception {
+        Path updateCenter = tmp.getRoot().toPath().resolve("update-center.actual.json");
+        Files.writeString(updateCenter, "{\"deprecations\": {\"baz\": {}}}");
+        Path cache = Files.write(tmp.getRoot().toPath().resolve("deprecated.txt"), List.of("foo"));
+        Duration day = Duration.ofDays(1);
+        assertThat(DeprecatedPlugins.load(updateCenter.toString(), cache, day), is(Set.of("foo")));
+
+        Files.setLastModifiedTime(cache, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        assertThat(DeprecatedPlugins.load(updateCenter + ".missing", cache, day), is(Set.of("foo")));
+        assertThat(DeprecatedPlugins.load(updateCenter.toString(), cache, day), is(Set.of("baz")));
+        assertThat(Files.readAllLines(cache, StandardCharsets.UTF_8), is(List.of("baz")));
+    }
+}
@@ -0,0 +1,149 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+import org.junit.Test;
+
+public class DocServerTest {
+    private final List<String> extracted = new ArrayList<>();
+    private int generated;
+
+    private static ModelSnapshot.Plugin page(String name) {
+        ModelSnapshot.Model model = new ModelSnapshot.Model("org." + name + ".Step");
+        model.help = Outcome.value("<p>help of " + name + "</p>");
+        model.params = List.of();
+        ModelSnapshot.Step step = new ModelSnapshot.Step(
+                "org." + name + ".Step",
+                List.of("org." + name + ".Descriptor"),
+                false,
+                Outcome.value(name + "Step"),
+                "Step of " + name,
+                Outcome.value(false),
+                null,
+                Outcome.value("<p>help of " + name + "</p>"),
+                Outcome.value(model));
+        return new ModelSnapshot.Plugin(
+                name, "Plugin " + name, false, List.of(new ModelSnapshot.Section("Steps", List.of(step))));
+    }
+
+    private final DocServer.Source source = new DocServer.Source() {
+        @Override
+        public Collection<String> plugins() {
+            return List.of("one", "two");
+        }
+
+        @Override
+        public ModelSnapshot.Plugin plugin(String name) {
+            extracted.add(name);
+            return plugins().contains(name) ? page(name) : null;
+        }
+
+        @Override
+        public List<ModelSnapshot.Directive> directives() {
+            ModelSnapshot.Section section = page("two").sections().get(0);
+            return List.of(new ModelSnapshot.Directive(
+                    "options", List.of(new ModelSnapshot.Section("two", section.steps()))));
+        }
+
+        @Override
+        public void changed(String plugin) {}
+
+        @Override
+        public void generate() {
+            generated++;
+        }
+    };
+
+    private static String request(HttpServer server, String method, String path) throws IOException {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return status + " " + new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void pagesAreRenderedOnceUntilChanged() throws Exception {
+        DocServer docs = new DocServer(source, Map.of("org.one.Step", "one", "org.two.Step", "two"));
+        HttpServer server = docs.start(0);
+        try {
+            assertThat(request(server, "GET", "/plugins"), is("200 one\ntwo\n"));
+            assertThat(request(server, "GET", "/plugin/one"), containsString("== Plugin one"));
+            assertThat(request(server, "GET", "/plugin/one"), containsString("help of one"));
+            assertThat(request(server, "GET", "/plugin/two"), containsString("== Plugin two"));
+            assertThat(request(server, "GET", "/directive/options"), containsString("help of two"));
+            assertThat(request(server, "GET", "/plugin/three"), containsString("404 "));
+            assertThat(extracted, is(List.of("one", "two", "three")));
+
+            assertThat(request(server, "POST", "/changed/two"), is("200 Dropped 2 pages\n"));
+            request(server, "GET", "/plugin/one");
+            request(server, "GET", "/plugin/two");
+            assertThat(extracted, is(List.of("one", "two", "three", "two")));
+
+            assertThat(request(server, "POST", "/generate"), containsString("200 Generated all pages"));
+            assertThat(generated, is(1));
+            assertThat(request(server, "POST", "/stop"), is("200 Stopping\n"));
+            docs.await();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Sends a request with headers {@link HttpURLConnection} does not let set.
+     *
+     * @return the status line of the response
+     */
+    private static String post(HttpServer server, String path, String headers) throws IOException {
+        try (Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort())) {
+            String request =
+                    "POST " + path + " HTTP/1.1\r\n" + headers + "Content-Length: 0\r\nConnection: close\r\n\r\n";
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            return response.substring(0, response.indexOf("\r\n"));
+        }
+    }
+
+    @Test
+    public void requestsOfOtherSitesAreRefused() throws Exception {
+        HttpServer server = new DocServer(source, Map.of()).start(0);
+        String local = "Host: localhost:" + server.getAddress().getPort() + "\r\n";
+        try {
+            assertThat(
+                    post(server, "/generate", local + "Origin: https://example.com\r\n"), startsWith("HTTP/1.1 403 "));
+            assertThat(
+                    post(server, "/generate", "Host: example.com:" + server.getAddress().getPort() + "\r\n"),
+                    startsWith("HTTP/1.1 403 "));
+            assertThat(generated, is(0));
+            assertThat(post(server, "/generate", local), startsWith("HTTP/1.1 200 "));
+            assertThat(generated, is(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void allPagesAreDroppedWithoutThePluginsOfTheClasses() throws Exception {
+        DocServer docs = new DocServer(source, Map.of());
+        docs.plugin("one");
+        docs.plugin("two");
+        assertThat(docs.changed("two"), is(2));
+    }
+}
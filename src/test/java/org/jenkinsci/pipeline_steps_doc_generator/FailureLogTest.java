@@ -0,0 +1,103 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+import org.junit.Test;
+
+public class FailureLogTest {
+    @Test
+    public void eachFailureIsLoggedOnceAndCounted() {
+        List<String> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        Logger logger = Logger.getLogger(FailureLog.class.getName());
+        logger.addHandler(handler);
+        try {
+            FailureLog failures = new FailureLog();
+            failures.failed(Level.WARNING, "Description of a", new IllegalStateException("broken"));
+            failures.failed(Level.WARNING, "Description of b", new IllegalStateException("broken"));
+            failures.failed(Level.WARNING, "Description of a", new IllegalStateException("broken"));
+            failures.failed(Level.WARNING, "Description of a", new IllegalStateException("other"));
+            assertThat(
+                    logged,
+                    is(List.of(
+                            "Description of a, encountered ",
+                            "Description of b, encountered ",
+                            "Description of a, encountered ")));
+            assertThat(failures.size(), is(3));
+            assertThat(failures.getOccurrences(), is(4L));
+            assertThat(
+                    failures.toString(),
+                    is("failures: 3 distinct, met 4 times, most frequent:\n"
+                            + "  2 x Description of a, encountered java.lang.IllegalStateException: broken\n"
+                            + "  1 x Description of a, encountered java.lang.IllegalStateException: other\n"
+                            + "  1 x Description of b, encountered java.lang.IllegalStateException: broken"));
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void failuresOfThisRunAreLoggedWithTheirStackTrace() {
+        List<Throwable> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getThrown());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        IllegalStateException failure = new IllegalStateException("cannot describe " + System.nanoTime());
+        ModelSnapshot.Step step = new ModelSnapshot.Step(
+                "org.example.Broken",
+                List.of("org.example.Descriptor"),
+                false,
+                Outcome.value("broken"),
+                "Broken step",
+                Outcome.value(false),
+                null,
+                Outcome.value("<p>help</p>"),
+                Outcome.failed(failure));
+        Logger logger = Logger.getLogger(FailureLog.class.getName());
+        logger.addHandler(handler);
+        try {
+            ToAsciiDoc.generatePluginHelp(
+                    new RenderContext(),
+                    new ModelSnapshot.Plugin(
+                            "broken", "Broken", false, List.of(new ModelSnapshot.Section("Steps", List.of(step)))),
+                    true);
+            assertThat(logged, is(List.of(failure)));
+            assertThat(logged.get(0).getStackTrace().length > 0, is(true));
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void noFailure() {
+        assertThat(new FailureLog().toString(), is("failures: none"));
+    }
+}
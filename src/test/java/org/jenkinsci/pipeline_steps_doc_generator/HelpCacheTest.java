@@ -0,0 +1,40 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.junit.Test;
+
+public class HelpCacheTest {
+    private final List<String> sanitized = new ArrayList<>();
+    private final UnaryOperator<String> sanitize = help -> {
+        sanitized.add(help);
+        return "<div>" + help + "</div>";
+    };
+
+    @Test
+    public void eachHelpIsSanitizedOnce() {
+        HelpCache cache = new HelpCache(1000);
+        assertThat(cache.get("<p>a</p>", sanitize), is("<div><p>a</p></div>"));
+        assertThat(cache.get("<p>b</p>", sanitize), is("<div><p>b</p></div>"));
+        assertThat(cache.get("<p>a</p>", sanitize), is("<div><p>a</p></div>"));
+        assertThat(sanitized, is(List.of("<p>a</p>", "<p>b</p>")));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    @Test
+    public void leastRecentlyUsedHelpIsEvicted() {
+        HelpCache cache = new HelpCache(120); // 2 bytes for each of 8 + 19 characters per help
+        cache.get("<p>a</p>", sanitize);
+        cache.get("<p>b</p>", sanitize);
+        cache.get("<p>a</p>", sanitize);
+        cache.get("<p>c</p>", sanitize);
+        cache.get("<p>a</p>", sanitize);
+        cache.get("<p>b</p>", sanitize);
+        assertThat(sanitized, is(List.of("<p>a</p>", "<p>b</p>", "<p>c</p>", "<p>b</p>")));
+    }
+}
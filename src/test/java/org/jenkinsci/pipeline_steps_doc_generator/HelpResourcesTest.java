@@ -0,0 +1,28 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.junit.Test;
+
+public class HelpResourcesTest {
+    public static class WithHelp {}
+
+    public static class Inheriting extends WithHelp {}
+
+    @Test
+    public void helpIsReadAsUtf8() throws Exception {
+        String help = "<p>\n  Prüft die Änderungen — in UTF-8.\n</p>";
+        assertThat(HelpResources.get("help.html", WithHelp.class), is(help));
+        assertThat(HelpResources.get("help.html", Inheriting.class), is(help));
+        assertThat(HelpResources.get("help.html", WithHelp.class), is(help));
+    }
+
+    @Test
+    public void missingHelpIsNull() throws Exception {
+        assertThat(HelpResources.get("help.html", HelpResourcesTest.class), is(nullValue()));
+        assertThat(HelpResources.get("help-name.html", Inheriting.class), is(nullValue()));
+        assertThat(HelpResources.get("help.html", String.class), is(nullValue()));
+    }
+}
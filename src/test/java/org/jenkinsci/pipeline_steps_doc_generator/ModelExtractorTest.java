@@ -0,0 +1,142 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ModelExtractorTest {
+    public static class Hanging implements Describable<Hanging> {}
+
+    public static class Quick implements Describable<Quick> {}
+
+    public static class HangingDescriptor extends Descriptor<Hanging> {
+        HangingDescriptor() {
+            super(Hanging.class);
+        }
+
+        @Override
+        public String getDisplayName() {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "Never";
+        }
+    }
+
+    public static class QuickDescriptor extends Descriptor<Quick> {
+        QuickDescriptor() {
+            super(Quick.class);
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Quick";
+        }
+    }
+
+    public static class Allocating implements Describable<Allocating> {}
+
+    public static class AllocatingDescriptor extends Descriptor<Allocating> {
+        static byte[] allocated;
+
+        AllocatingDescriptor() {
+            super(Allocating.class);
+        }
+
+        @Override
+        public String getDisplayName() {
+            allocated = new byte[ALLOCATED];
+            return "Allocating";
+        }
+    }
+
+    private static final int ALLOCATED = 4 * 1024 * 1024;
+
+    public static class Meeting implements Describable<Meeting> {}
+
+    public static class MeetingDescriptor extends Descriptor<Meeting> {
+        static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+        MeetingDescriptor() {
+            super(Meeting.class);
+        }
+
+        /**
+         * Returns once another thread extracts it too.
+         */
+        @Override
+        public String getDisplayName() {
+            try {
+                BARRIER.await(10, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+            return "Met";
+        }
+    }
+
+    @Test
+    public void descriptorsAreExtractedConcurrently() throws Exception {
+        ModelExtractor extractor = new ModelExtractor();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<ModelSnapshot.Directive>> directives = new ArrayList<>();
+            for (String name : List.of("one", "two")) {
+                directives.add(executor.submit(
+                        () -> extractor.directive(name, Map.of(name, List.of(new MeetingDescriptor())))));
+            }
+            for (Future<ModelSnapshot.Directive> directive : directives) {
+                assertThat(directive.get().sections().get(0).steps().get(0).displayName(), is("Met"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void allocationsOfWorkersAreCounted() throws Exception {
+        RunMetrics metrics = new RunMetrics();
+        ModelExtractor extractor = new ModelExtractor(metrics);
+        extractor.setTimeout(Duration.ofSeconds(60));
+        try (RunMetrics.Timer plugin = metrics.plugin("example")) {
+            extractor.directive("options", Map.of("example", List.of(new AllocatingDescriptor())));
+        }
+        assertThat(metrics.getEntries(RunMetrics.Kind.DESCRIPTOR).get(0).allocatedBytes() >= ALLOCATED, is(true));
+        assertThat(metrics.getEntries(RunMetrics.Kind.PLUGIN).get(0).allocatedBytes() >= ALLOCATED, is(true));
+    }
+
+    @Test
+    public void hangingDescriptorIsDocumentedByPlaceholder() throws Exception {
+        RunMetrics metrics = new RunMetrics();
+        ModelExtractor extractor = new ModelExtractor(metrics);
+        extractor.setTimeout(Duration.ofMillis(200));
+        Map<String, List<Descriptor>> descriptors = new LinkedHashMap<>();
+        descriptors.put("example", List.of(new HangingDescriptor(), new QuickDescriptor()));
+
+        ModelSnapshot.Directive directive = extractor.directive("options", descriptors);
+        List<ModelSnapshot.Step> steps = directive.sections().get(0).steps();
+        assertThat(steps.get(0).type(), is(Hanging.class.getName()));
+        assertThat(steps.get(0).model().isFailed(), is(true));
+        assertThat(steps.get(1).displayName(), is("Quick"));
+        assertThat(metrics.getTimeouts(), is(1));
+        assertThat(
+                metrics.toJson().getJSONArray("timeouts").getJSONObject(0).getString("stack"),
+                containsString("HangingDescriptor.getDisplayName"));
+    }
+}
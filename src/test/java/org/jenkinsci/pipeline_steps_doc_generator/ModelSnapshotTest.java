@@ -0,0 +1,150 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelSnapshotTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static ModelSnapshot.Param param(String name, String help, ModelSnapshot.Type type) {
+        return new ModelSnapshot.Param(
+                name, false, "", Outcome.value(help), type == null ? null : Outcome.value(type));
+    }
+
+    private static ModelSnapshot.Step step(String symbol, String help, Outcome<ModelSnapshot.Model> model) {
+        return new ModelSnapshot.Step(
+                "org.example." + symbol,
+                List.of("org.example.Descriptor"),
+                false,
+                Outcome.value(symbol),
+                "Step " + symbol,
+                Outcome.value(false),
+                null,
+                Outcome.value(help),
+                model);
+    }
+
+    private static ModelSnapshot snapshot() {
+        ModelSnapshot.Model a = new ModelSnapshot.Model("org.example.A");
+        ModelSnapshot.Model b = new ModelSnapshot.Model("org.example.B");
+        ModelSnapshot.Model c = new ModelSnapshot.Model("org.example.C");
+        a.help = Outcome.value("<p>A help</p>");
+        a.params = List.of(
+                new ModelSnapshot.Param("name", true, " : String", Outcome.value("<b>name</b>"), null),
+                param("mode", null, new ModelSnapshot.EnumValues(List.of("FAST", "SLOW"))),
+                param("child", "", new ModelSnapshot.NestedObject(b)),
+                param(
+                        "any",
+                        null,
+                        new ModelSnapshot.NestedChoice(
+                                "org.example.Base", Outcome.value(List.of(new ModelSnapshot.Choice(
+                                        Outcome.value("bee"), b))))),
+                param(
+                        "broken",
+                        null,
+                        new ModelSnapshot.NestedChoice(
+                                "org.example.Base", Outcome.value(List.of(new ModelSnapshot.Choice(
+                                        Outcome.failed(new IllegalStateException("no symbol")), c))))),
+                param("list", null, new ModelSnapshot.ArrayOf(new ModelSnapshot.NestedChoice(null, null))),
+                param("map", null, new ModelSnapshot.Unsupported(true, "java.util.Map&lt;K, V&gt;")));
+        b.help = Outcome.value(null);
+        b.params = List.of(param("parent", null, new ModelSnapshot.NestedObject(a)));
+        c.help = Outcome.failed(new IOException("broken help"));
+        c.params = List.of();
+
+        ModelSnapshot.Step delegated = new ModelSnapshot.Step(
+                "org.example.Meta",
+                List.of("org.example.MetaDescriptor"),
+                false,
+                Outcome.value("meta"),
+                "Meta step",
+                Outcome.value(true),
+                Outcome.value("meta([$class: 'Delegate'])"),
+                Outcome.value("<p>meta</p>"),
+                null);
+        ModelSnapshot.Plugin plugin = new ModelSnapshot.Plugin(
+                "example",
+                "Example",
+                true,
+                List.of(
+                        new ModelSnapshot.Section(
+                                "Steps",
+                                List.of(
+                                        step("one", "fallback one", Outcome.value(a)),
+                                        step("two", "fallback two", Outcome.value(c)),
+                                        step("three", null, Outcome.failed(new LinkageError("missing"))))),
+                        new ModelSnapshot.Section("Advanced/Deprecated Steps", List.of(delegated))));
+        ModelSnapshot.Step describable = new ModelSnapshot.Step(
+                "org.example.A",
+                List.of("org.example.ADescriptor"),
+                true,
+                Outcome.value("aaa"),
+                "A describable",
+                null,
+                null,
+                null,
+                Outcome.value(a));
+        ModelSnapshot.Directive directive = new ModelSnapshot.Directive(
+                "options", List.of(new ModelSnapshot.Section("core", List.of(describable, delegated))));
+        return new ModelSnapshot(List.of(plugin), List.of(directive));
+    }
+
+    private static String render(ModelSnapshot snapshot) {
+        return ToAsciiDoc.generatePluginHelp(new RenderContext(), snapshot.plugins.get(0), true)
+                + ToAsciiDoc.generateDirectiveHelp(new RenderContext(), snapshot.directives.get(0), true);
+    }
+
+    @Test
+    public void failuresAreRenderedAsTheyHappened() {
+        String page = render(snapshot());
+        assertThat(page, containsString("== Example (deprecated)"));
+        assertThat(page, containsString("<li><code>bee</code><div>\n"));
+        assertThat(page, not(containsString("no symbol")));
+        assertThat(page, containsString("++++\nfallback two\n"));
+        assertThat(page, containsString("<code>java.lang.LinkageError: missing</code>"));
+        assertThat(page, containsString("<p>meta</p>To use this step you need to specify a delegate class"));
+    }
+
+    @Test
+    public void savedSnapshotRendersTheSame() throws Exception {
+        ModelSnapshot snapshot = snapshot();
+        for (String name : List.of("model.json", "model.json.gz")) {
+            Path file = tmp.getRoot().toPath().resolve(name);
+            snapshot.write(file);
+            assertThat(render(ModelSnapshot.read(file)), is(render(snapshot)));
+        }
+    }
+
+    @Test
+    public void shardsMergeIntoTheWholeSnapshot() {
+        ModelSnapshot whole = snapshot();
+        ModelSnapshot.Section other = new ModelSnapshot.Section("other", List.of(step("four", "four", null)));
+        ModelSnapshot first = new ModelSnapshot(
+                List.of(new ModelSnapshot.Plugin("other", "Other", false, List.of(other))),
+                List.of(new ModelSnapshot.Directive("options", List.of(other))));
+        ModelSnapshot second = new ModelSnapshot(whole.plugins, whole.directives);
+
+        ModelSnapshot merged = ModelSnapshot.merge(List.of(first, second));
+        assertThat(merged.plugins.stream().map(ModelSnapshot.Plugin::name).toList(), is(List.of("example", "other")));
+        assertThat(merged.directives.size(), is(1));
+        assertThat(
+                merged.directives.get(0).sections().stream()
+                        .map(ModelSnapshot.Section::name)
+                        .toList(),
+                is(List.of("core", "other")));
+        assertThat(
+                ToAsciiDoc.generatePluginHelp(new RenderContext(), merged.plugins.get(0), true),
+                is(ToAsciiDoc.generatePluginHelp(new RenderContext(), whole.plugins.get(0), true)));
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jenkinsci.pipeline_steps_doc_generator.ModelSnapshot.Outcome;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class OutputValidatorTest {
+    private static String page(String name) {
+        ModelSnapshot.Model nested = new ModelSnapshot.Model("org.example.Nested");
+        nested.help = Outcome.value("<p>nested <a href=\"https://www.jenkins.io/\">help</a></p>");
+        nested.params = List.of(new ModelSnapshot.Param("value", true, " : String", Outcome.value("<b>v</b>"), null));
+        ModelSnapshot.Model model = new ModelSnapshot.Model("org.example.Step");
+        model.help = Outcome.value("<p>help</p><ul><li>item</li></ul>");
+        model.params = List.of(new ModelSnapshot.Param(
+                "nested", false, "", Outcome.value(null), Outcome.value(new ModelSnapshot.NestedObject(nested))));
+        ModelSnapshot.Step step = new ModelSnapshot.Step(
+                "org.example.Step",
+                List.of("org.example.Descriptor"),
+                false,
+                Outcome.value("example"),
+                "Example step",
+                Outcome.value(false),
+                null,
+                Outcome.value("<p>help</p>"),
+                Outcome.value(model));
+        ModelSnapshot.Plugin plugin = new ModelSnapshot.Plugin(
+                name, "Plugin " + name, false, List.of(new ModelSnapshot.Section("Steps", List.of(step))));
+        return ToAsciiDoc.generatePluginHelp(new RenderContext(), plugin, true);
+    }
+
+    @Test
+    public void renderedPagesPass() throws Exception {
+        Map<String, String> pages = new TreeMap<>();
+        pages.put(OutputValidator.ASCII + "example.adoc", page("example"));
+        pages.put(OutputValidator.ASCII + "linked.adoc", page("linked")
+                + "<li><span><a href=\"/doc/pipeline/steps/params/nested\"><code>Nested</code></a></span></li>\n");
+        pages.put(OutputValidator.ASCII + "params/nested.adoc", ParamsSeparator.header("Nested") + "++++\n");
+        assertThat(OutputValidator.check(pages, 2), is(List.of()));
+    }
+
+    @Test
+    public void brokenPagesFail() {
+        String page = ParamsSeparator.header("A") + "<ul><li>item</li></ul>\n++++\n";
+        assertThat(OutputValidator.check("a.adoc", page, Set.of()), is(List.of()));
+        assertThat(
+                OutputValidator.check("a.adoc", page.substring(page.indexOf("== ")), Set.of()),
+                is(List.of("a.adoc: no front matter with a title")));
+        assertThat(
+                OutputValidator.check("a.adoc", page + "++++\n<li>\n", Set.of()),
+                is(List.of("a.adoc: 3 ++++ delimiters, a block is not closed", "a.adoc: 2 <li> for 1 </li>")));
+        assertThat(
+                OutputValidator.check("a.adoc", page + "<a href=\"/doc/pipeline/steps/params/gone\">", Set.of()),
+                is(List.of("a.adoc: broken link to params/gone")));
+        assertThat(
+                OutputValidator.check("a.adoc", page + "<img src=x onerror=\"alert(1)\">", Set.of()),
+                is(List.of("a.adoc: unsanitized HTML <img src=x onerror=")));
+    }
+
+    @Test
+    public void regressionsFromTheBaselineFail() throws Exception {
+        JSONObject baseline = new JSONObject()
+                .put(
+                        "pages",
+                        new JSONObject()
+                                .put("a.adoc", 1000)
+                                .put("b.adoc", 1000)
+                                .put("c.adoc", 1000)
+                                .put(OutputValidator.ASCII + "params/p.adoc", 1000))
+                .put("phases", new JSONObject().put("boot", 60_000).put("render plugins", 100_000).put("fast", 10));
+        JSONObject current = new JSONObject()
+                .put(
+                        "pages",
+                        new JSONObject()
+                                .put("a.adoc", 600)
+                                .put("b.adoc", 400)
+                                .put("d.adoc", 10)
+                                .put(OutputValidator.ASCII + "params/p.adoc", 100))
+                .put("phases", new JSONObject().put("boot", 130_000).put("render plugins", 190_000).put("fast", 50));
+        assertThat(
+                OutputValidator.compare(baseline, current, 0.5, 1),
+                is(List.of(
+                        "b.adoc: 400 bytes, had 1000",
+                        "phase boot: 130000 ms, took 60000 ms")));
+    }
+}
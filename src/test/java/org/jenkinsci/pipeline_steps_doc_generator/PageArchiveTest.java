@@ -0,0 +1,58 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageArchiveTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void sameEntriesGiveSameArchive() throws Exception {
+        try (PageArchive first = new PageArchive();
+                PageArchive second = new PageArchive()) {
+            first.put("workflow-basic-steps.adoc", "basic");
+            first.put("params/gitscm.adoc", "git");
+            first.put("git.adoc", "draft");
+            first.put("git.adoc", "git page");
+            second.put("git.adoc", "git page");
+            second.put("params/gitscm.adoc", "git");
+            second.put("workflow-basic-steps.adoc", "basic");
+
+            Path zip = tmp.getRoot().toPath().resolve("allAscii.zip");
+            long size = first.write(zip);
+            ByteArrayOutputStream other = new ByteArrayOutputStream();
+            second.write(other);
+            Path otherZip = Files.write(tmp.getRoot().toPath().resolve("other.zip"), other.toByteArray());
+            assertThat(Files.mismatch(zip, otherZip), is(-1L));
+            assertThat(size, is(Files.size(zip)));
+
+            List<String> names = new ArrayList<>();
+            try (ZipFile file = new ZipFile(zip.toFile())) {
+                for (ZipEntry entry : Collections.list(file.entries())) {
+                    names.add(entry.getName());
+                    assertThat(entry.getTimeLocal(), is(PageArchive.TIMESTAMP));
+                }
+                byte[] page = file.getInputStream(file.getEntry("git.adoc")).readAllBytes();
+                assertThat(new String(page, StandardCharsets.UTF_8), is("git page"));
+            }
+            assertThat(names, is(List.of("git.adoc", "params/", "params/gitscm.adoc", "workflow-basic-steps.adoc")));
+            assertThat(first.getRootNames(), is(List.of("git.adoc", "workflow-basic-steps.adoc")));
+            assertThat(first.get("git.adoc"), is("git page"));
+            assertThat(first.size(), is(16L));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageChangesTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final FileTime PREVIOUS_RUN = FileTime.fromMillis(1_000_000_000_000L);
+
+    private Path page(String name, String content) throws Exception {
+        Path page = tmp.getRoot().toPath().resolve(name);
+        Files.createDirectories(page.getParent());
+        Files.writeString(page, content);
+        Files.setLastModifiedTime(page, PREVIOUS_RUN);
+        return page;
+    }
+
+    @Test
+    public void onlyChangedPagesAreWrittenAndReported() throws Exception {
+        Path same = page("same.adoc", "same");
+        Path rendered = page("rendered.adoc", "processed");
+        Path changed = page("changed.adoc", "before");
+        Path separate = page("params/separate.adoc", "separate");
+        Path removed = page("removed.adoc", "removed");
+        Path edited = page("edited.adoc", "edited");
+        PageChanges changes = PageChanges.scan(tmp.getRoot().toPath());
+
+        assertThat(PageChanges.write(same, writer -> writer.write("same")), is(false));
+        // rendered, then processed back to what it was
+        assertThat(PageChanges.write(rendered, writer -> writer.write("rendered")), is(true));
+        assertThat(PageChanges.write(rendered, "processed"), is(true));
+        assertThat(PageChanges.write(changed, "after"), is(true));
+        assertThat(PageChanges.write(separate, "separate"), is(false));
+        assertThat(PageChanges.write(tmp.getRoot().toPath().resolve("added.adoc"), "added"), is(true));
+        Files.delete(removed);
+        // not written by the run, told apart by its size and date
+        Files.writeString(edited, "edited by hand");
+
+        JSONObject report = changes.finish();
+        assertThat(report.getInt("unchanged"), is(3));
+        assertThat(report.getJSONArray("changed").toList(), is(List.of("changed.adoc", "edited.adoc")));
+        assertThat(report.getJSONArray("added").toList(), is(List.of("added.adoc")));
+        assertThat(report.getJSONArray("removed").toList(), is(List.of("removed.adoc")));
+        for (Path page : List.of(same, rendered, separate)) {
+            assertThat(Files.getLastModifiedTime(page), is(PREVIOUS_RUN));
+        }
+        assertThat(Files.readString(rendered), is("processed"));
+        try (Stream<Path> files = Files.list(tmp.getRoot().toPath())) {
+            assertThat(files.noneMatch(file -> file.toString().endsWith(".tmp")), is(true));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import hudson.model.Descriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import jenkins.plugins.DetachedPluginsUtil;
+import net.java.sezpoz.impl.SerAnnotatedElement;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginPrefilterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @SuppressWarnings("rawtypes")
+    public abstract static class BaseDescriptor extends Descriptor {}
+
+    public abstract static class SubDescriptor extends BaseDescriptor {}
+
+    public static class Listener {}
+
+    public abstract static class StepsDescriptor extends StepDescriptor {}
+
+    @Test
+    public void pluginsContributingDescriptorsAreBootedWithTheirDependencies() throws Exception {
+        File plugins = tmp.newFolder("plugins");
+        String detached = DetachedPluginsUtil.getDetachedPlugins().get(0).getShortName();
+        plugin(plugins, "library", null, true, List.of(Listener.class), BaseDescriptor.class, Listener.class);
+        plugin(plugins, "steps", "library:1.0,listened:2.0;resolution:=optional", false, List.of(SubDescriptor.class),
+                SubDescriptor.class);
+        plugin(plugins, "listened", null, false, List.of(Listener.class), Listener.class);
+        plugin(plugins, "listener", null, false, List.of(Listener.class), Listener.class);
+        plugin(plugins, "empty", null, false, List.of());
+        plugin(plugins, detached, null, false, List.of());
+
+        PluginPrefilter prefilter = PluginPrefilter.scan(plugins);
+        assertThat(prefilter.size(), is(6));
+        Set<String> selected = prefilter.select();
+        assertThat(selected, is(new TreeSet<>(List.of("library", "steps", "listened", detached))));
+
+        File staged = tmp.newFolder("prefiltered", "plugins");
+        Files.write(new File(staged, "listener.hpi").toPath(), new byte[0]);
+        prefilter.stage(selected, staged);
+        assertThat(
+                new TreeSet<>(List.of(staged.list())),
+                is(new TreeSet<>(List.of("library.hpi", "steps.hpi", "listened.hpi", detached + ".hpi"))));
+        assertThat(
+                Files.mismatch(new File(staged, "steps.hpi").toPath(), new File(plugins, "steps.hpi").toPath()),
+                is(-1L));
+    }
+
+    @Test
+    public void pluginsContributingOnlyStepsAreBootedByTheirShard() throws Exception {
+        File plugins = tmp.newFolder("plugins");
+        plugin(plugins, "api", null, true, List.of(), StepDescriptor.class);
+        List<String> steps = List.of("steps-a", "steps-b", "steps-c", "steps-d");
+        for (String name : steps) {
+            plugin(plugins, name, "api:1.0", false, List.of(StepsDescriptor.class), StepsDescriptor.class);
+        }
+        plugin(plugins, "descriptors", null, false, List.of(BaseDescriptor.class), BaseDescriptor.class);
+
+        PluginPrefilter prefilter = PluginPrefilter.scan(plugins);
+        Set<String> booted = new TreeSet<>();
+        for (int i = 0; i < 2; i++) {
+            Shard shard = new Shard(i, 2);
+            Set<String> selected = prefilter.select(shard);
+            assertThat(selected.contains("descriptors"), is(true));
+            for (String name : steps) {
+                assertThat(selected.contains(name), is(shard.owns(name)));
+            }
+            booted.addAll(selected);
+        }
+        assertThat(booted, is(prefilter.select()));
+    }
+
+    @Test
+    public void superclassIsReadFromClassFile() throws Exception {
+        try (InputStream in = classFile(SubDescriptor.class)) {
+            assertThat(PluginPrefilter.readSuperclass(in), is(BaseDescriptor.class.getName()));
+        }
+        try (InputStream in = classFile(Listener.class)) {
+            assertThat(PluginPrefilter.readSuperclass(in), is(Object.class.getName()));
+        }
+    }
+
+    /**
+     * Writes a plugin archive, with its classes and extension index in {@code WEB-INF/classes} or in a library.
+     */
+    private static void plugin(
+            File dir, String name, String dependencies, boolean inLib, List<Class<?>> extensions, Class<?>... classes)
+            throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Short-Name", name);
+        if (dependencies != null) {
+            manifest.getMainAttributes().putValue("Plugin-Dependencies", dependencies);
+        }
+        try (JarOutputStream hpi = new JarOutputStream(Files.newOutputStream(new File(dir, name + ".hpi").toPath()),
+                manifest)) {
+            if (inLib) {
+                ByteArrayOutputStream jar = new ByteArrayOutputStream();
+                try (ZipOutputStream lib = new ZipOutputStream(jar)) {
+                    writeClasses(lib, "", extensions, classes);
+                }
+                hpi.putNextEntry(new ZipEntry("WEB-INF/lib/" + name + ".jar"));
+                hpi.write(jar.toByteArray());
+            } else if (!extensions.isEmpty()) {
+                writeClasses(hpi, "WEB-INF/classes/", extensions, classes);
+            }
+        }
+    }
+
+    private static void writeClasses(ZipOutputStream zip, String prefix, List<Class<?>> extensions, Class<?>[] classes)
+            throws IOException {
+        zip.putNextEntry(new ZipEntry(prefix + "META-INF/annotations/hudson.Extension"));
+        ObjectOutputStream index = new ObjectOutputStream(zip);
+        for (Class<?> extension : extensions) {
+            index.writeObject(new SerAnnotatedElement(extension.getName(), null, false, new TreeMap<>()));
+        }
+        index.writeObject(null);
+        index.flush();
+        for (Class<?> c : classes) {
+            zip.putNextEntry(new ZipEntry(prefix + c.getName().replace('.', '/') + ".class"));
+            try (InputStream in = classFile(c)) {
+                in.transferTo(zip);
+            }
+        }
+    }
+
+    private static InputStream classFile(Class<?> c) {
+        return c.getResourceAsStream(c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class");
+    }
+}
@@ -1,6 +1,7 @@
 package org.jenkinsci.pipeline_steps_doc_generator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.io.FileMatchers.aReadableFile;
@@ -8,11 +9,15 @@ import static org.junit.Assert.assertThrows;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ProcessAsciiDocTest {
     private String allAscii = "src/test/resources/input/";
@@ -23,6 +28,9 @@ public class ProcessAsciiDocTest {
 
     private ProcessAsciiDoc pad = new ProcessAsciiDoc();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @After
     public void deleteGeneratedFiles() {
         File file = new File(GIT_SCM_PARAMS_NAME);
@@ -62,4 +70,63 @@ public class ProcessAsciiDocTest {
                 "<li><span><a href=\"/doc/pipeline/steps/params/gitscm\"><code>$class: 'GitSCM'</code></a></span></li>";
         assertThat(content, hasItem(expected));
     }
+
+    @Test
+    public void isOuterClassTooShortOnceInnerOneSeparatedLeftInPlace() throws Exception {
+        String page = String.join(
+                "\n",
+                "<li><code>outer</code><div>",
+                "<ul>",
+                "<li><code>inner</code><div>",
+                "<p>1</p>",
+                "<p>2</p>",
+                "<p>3</p>",
+                "<p>4</p>",
+                "</div></li>",
+                "</ul>",
+                "</div></li>");
+        List<String> extracts = new ArrayList<>();
+        ParamsSeparator separator =
+                new ParamsSeparator((fileName, extract) -> extracts.add(fileName), List.of("inner", "outer"), 6);
+        String processed = separator.processPage(page);
+        assertThat(extracts, is(List.of("inner")));
+        assertThat(processed, containsString("<li><code>outer</code><div>"));
+        assertThat(processed, containsString("/doc/pipeline/steps/params/inner"));
+    }
+
+    private Path copyInput() throws Exception {
+        Path dir = tmp.newFolder().toPath();
+        Files.createDirectory(dir.resolve("params"));
+        Files.copy(child.toPath(), dir.resolve(child.getName()));
+        return dir;
+    }
+
+    @Test
+    public void isSinglePassIdenticalToSeparateClass() throws Exception {
+        List<String> classNames = Arrays.asList("$class: 'GitSCM'", "$class: 'MultiSCM'");
+        Path sequential = copyInput();
+        File page = sequential.resolve(child.getName()).toFile();
+        for (String className : classNames) {
+            Files.writeString(page.toPath(), pad.separateClass(className, sequential.toString(), page, 100));
+        }
+        Path singlePass = copyInput();
+        pad.processDocs(singlePass.toString(), 100, classNames);
+        for (String name : Arrays.asList(child.getName(), "params/gitscm.adoc", "params/multiscm.adoc")) {
+            assertThat(Files.readString(singlePass.resolve(name)), is(Files.readString(sequential.resolve(name))));
+        }
+    }
+
+    @Test
+    public void isArchiveProcessedAsFolder() throws Exception {
+        List<String> classNames = Arrays.asList("$class: 'GitSCM'", "$class: 'MultiSCM'");
+        Path folder = copyInput();
+        pad.processDocs(folder.toString(), 100, classNames);
+        try (PageArchive archive = new PageArchive()) {
+            archive.put(child.getName(), Files.readString(child.toPath()));
+            pad.processDocs(archive, 100, classNames);
+            for (String name : Arrays.asList(child.getName(), "params/gitscm.adoc", "params/multiscm.adoc")) {
+                assertThat(archive.get(name), is(Files.readString(folder.resolve(name))));
+            }
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegenerationManifestTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File plugins;
+    private File allAscii;
+    private Path manifestFile;
+
+    @Before
+    public void firstRun() throws Exception {
+        plugins = tmp.newFolder("plugins");
+        allAscii = tmp.newFolder("allAscii");
+        manifestFile = tmp.getRoot().toPath().resolve("manifest.json");
+        write(plugins, "a.hpi", "a 1");
+        write(plugins, "b.jpi", "b 1");
+        write(plugins, "c.hpi", "c 1");
+        RegenerationManifest manifest = load();
+        manifest.rendered("a", false, Set.of("a", RegenerationManifest.CORE), Set.of());
+        manifest.rendered("b", false, Set.of("b", "c"), Set.of(RegenerationManifest.CORE));
+        write(allAscii, "a.adoc", "page a");
+        write(allAscii, "b.adoc", "page b");
+        manifest.save(allAscii.getPath());
+    }
+
+    private static void write(File dir, String name, String content) throws Exception {
+        Files.writeString(new File(dir, name).toPath(), content, StandardCharsets.UTF_8);
+    }
+
+    private RegenerationManifest load() throws Exception {
+        RegenerationManifest manifest = RegenerationManifest.load(manifestFile, "generator");
+        manifest.scan(plugins, List.of());
+        return manifest;
+    }
+
+    private boolean keep(RegenerationManifest manifest, String plugin) {
+        return manifest.keep(plugin, false, allAscii.toPath().resolve(plugin + ".adoc"));
+    }
+
+    @Test
+    public void unchangedPagesAreKept() throws Exception {
+        RegenerationManifest manifest = load();
+        assertThat(keep(manifest, "a"), is(true));
+        assertThat(keep(manifest, "b"), is(true));
+        assertThat(manifest.keep("a", true, allAscii.toPath().resolve("a.adoc")), is(false));
+        assertThat(manifest.removed(), is(Set.of()));
+    }
+
+    @Test
+    public void pagesDocumentingChangedPluginsAreRendered() throws Exception {
+        write(plugins, "c.hpi", "c 2");
+        RegenerationManifest manifest = load();
+        assertThat(keep(manifest, "a"), is(true));
+        assertThat(keep(manifest, "b"), is(false));
+        // to render again, not to remove
+        assertThat(manifest.removed(), is(Set.of()));
+    }
+
+    @Test
+    public void pagesOfRemovedPluginsAreRemoved() throws Exception {
+        Files.delete(new File(plugins, "b.jpi").toPath());
+        RegenerationManifest manifest = load();
+        assertThat(keep(manifest, "a"), is(true));
+        assertThat(manifest.removed(), is(Set.of("b")));
+    }
+
+    @Test
+    public void newPluginsMayExtendChoices() throws Exception {
+        write(plugins, "d.hpi", "d 1");
+        RegenerationManifest manifest = load();
+        assertThat(keep(manifest, "a"), is(true));
+        assertThat(keep(manifest, "b"), is(false));
+    }
+
+    @Test
+    public void editedPagesAreRendered() throws Exception {
+        write(allAscii, "a.adoc", "page a edited");
+        assertThat(keep(load(), "a"), is(false));
+    }
+
+    @Test
+    public void everythingIsRenderedForAnotherGenerator() throws Exception {
+        RegenerationManifest manifest = RegenerationManifest.load(manifestFile, "other generator");
+        manifest.scan(plugins, List.of());
+        assertThat(keep(manifest, "a"), is(false));
+        assertThat(manifest.removed(), is(Set.of()));
+    }
+}
@@ -0,0 +1,76 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class RenderContextTest {
+    private static final Class<?>[] TYPES = {
+        String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Character.class,
+        Boolean.class, Object.class, Number.class, StringBuilder.class
+    };
+
+    /**
+     * Renders a type graph the way {@code ToAsciiDoc.generateHelp} does, cutting the search on recursion.
+     */
+    private static String render(RenderContext context, Map<Class<?>, List<Class<?>>> graph, Class<?> type) {
+        if (!context.enter(type.getName())) return "";
+        try {
+            String cached = context.cached(true);
+            if (cached != null) {
+                return cached;
+            }
+            StringBuilder text = new StringBuilder(type.getSimpleName()).append('(');
+            for (Class<?> child : graph.get(type)) {
+                text.append(render(context, graph, child)).append(',');
+            }
+            text.append(')');
+            context.store(true, text.toString());
+            return text.toString();
+        } finally {
+            context.exit(type.getName());
+        }
+    }
+
+    @Test
+    public void cachedFragmentsMatchUncachedRendering() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Map<Class<?>, List<Class<?>>> graph = new HashMap<>();
+            for (Class<?> type : TYPES) {
+                List<Class<?>> children = new ArrayList<>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    children.add(TYPES[random.nextInt(TYPES.length)]);
+                }
+                graph.put(type, children);
+            }
+            FragmentCache fragments = new FragmentCache();
+            for (int page = 0; page < 10; page++) {
+                Class<?> top = TYPES[random.nextInt(TYPES.length)];
+                String expected = render(new RenderContext(), graph, top);
+                assertThat(render(new RenderContext(fragments), graph, top), is(expected));
+            }
+            assertThat(fragments.getMisses(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    public void nestedTypesAreReused() {
+        Map<Class<?>, List<Class<?>>> graph = new HashMap<>();
+        graph.put(String.class, List.of(Object.class, Object.class));
+        graph.put(Object.class, List.of(Number.class));
+        graph.put(Number.class, List.of());
+        FragmentCache fragments = new FragmentCache();
+        assertThat(
+                render(new RenderContext(fragments), graph, String.class),
+                is("String(Object(Number(),),Object(Number(),),)"));
+        assertThat(fragments.getHits(), is(1L));
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import org.junit.Test;
+
+public class RepeatedBlocksTest {
+    private static String block(String className, String body, int lines) {
+        return nested(className, "", body, lines);
+    }
+
+    /**
+     * @param lines lines of the block, besides those of the inner block
+     */
+    private static String nested(String className, String inner, String body, int lines) {
+        StringBuilder block = new StringBuilder("<li><code>" + className + "</code><div>\n").append(inner);
+        for (int i = 2; i < lines; i++) {
+            block.append("<p>").append(body).append(' ').append(i).append("</p>\n");
+        }
+        return block.append("</div></li>\n").toString();
+    }
+
+    @Test
+    public void identicalBlocksRepeatedEnoughAreSeparatedInnerFirst() {
+        String inner = block("$class: 'Inner'", "inner", 150);
+        String outer = nested("outer", inner, "outer", 50);
+        RepeatedBlocks blocks = new RepeatedBlocks();
+        blocks.scan("<ul>\n" + outer + block("short", "short", 20) + block("perforce", "checkout", 300) + "</ul>\n");
+        blocks.scan("<ul>\n" + outer + block("short", "short", 20) + block("perforce", "scan", 300) + "</ul>\n");
+        blocks.scan("<ul>\n" + inner + block("$class: 'Configured'", "configured", 30) + "</ul>\n");
+
+        assertThat(
+                blocks.select(100, 200, List.of("$class: 'Configured'", "$class: 'Missing'")),
+                is(List.of("$class: 'Inner'", "outer", "$class: 'Missing'")));
+        assertThat(blocks.select(100, 0, List.of()), is(List.of()));
+        // outer shares its file name with a configured class
+        assertThat(blocks.select(100, 200, List.of("OUTER")), is(List.of("$class: 'Inner'", "OUTER")));
+    }
+
+    @Test
+    public void configuredClassNestedInDetectedOneIsSeparatedFirst() {
+        String inner = block("$class: 'Configured'", "configured", 150);
+        String outer = nested("outer", inner, "outer", 50);
+        RepeatedBlocks blocks = new RepeatedBlocks();
+        blocks.scan("<ul>\n" + outer + "</ul>\n");
+        blocks.scan("<ul>\n" + outer + "</ul>\n");
+
+        assertThat(
+                blocks.select(100, 100, List.of("$class: 'Other'", "$class: 'Configured'")),
+                is(List.of("$class: 'Other'", "$class: 'Configured'", "outer")));
+    }
+
+    @Test
+    public void linksLeftByPreviousRunCountAsOccurrences() {
+        String link = "<li><span><a href=\"/doc/pipeline/steps/params/kept\"><code>kept</code></a></span></li>\n";
+        RepeatedBlocks blocks = new RepeatedBlocks();
+        blocks.scan("<ul>\n" + block("kept", "kept", 150) + "</ul>\n");
+        assertThat(blocks.select(100, 100, List.of()), is(List.of()));
+        blocks.scan("<ul>\n" + link + "</ul>\n");
+        assertThat(blocks.select(100, 100, List.of()), is(List.of("kept")));
+    }
+}
@@ -0,0 +1,46 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunMetricsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void reportListsPhasesAndSlowestPlugins() throws Exception {
+        RunMetrics metrics = new RunMetrics();
+        try (RunMetrics.Timer phase = metrics.phase("render plugins")) {
+            for (String plugin : new String[] {"fast", "slow", "slow"}) {
+                try (RunMetrics.Timer timer = metrics.plugin(plugin)) {
+                    Thread.sleep(plugin.equals("slow") ? 20 : 1);
+                    timer.output(plugin.length());
+                }
+            }
+            metrics.milestone("COMPLETED");
+        }
+        Path report = tmp.getRoot().toPath().resolve("metrics.json");
+        metrics.write(report);
+
+        JSONObject json = new JSONObject(Files.readString(report));
+        assertThat(json.getInt("version"), is(RunMetrics.VERSION));
+        assertThat(json.getJSONArray("phases").getJSONObject(0).getString("name"), is("render plugins"));
+        assertThat(json.getJSONArray("milestones").getJSONObject(0).getString("name"), is("COMPLETED"));
+        assertThat(json.getInt("countPlugins"), is(2));
+        JSONArray slowest = json.getJSONArray("slowestPlugins");
+        assertThat(slowest.getJSONObject(0).getString("name"), is("slow"));
+        assertThat(slowest.getJSONObject(0).getLong("millis") >= 40, is(true));
+        assertThat(slowest.getJSONObject(0).getLong("outputBytes"), is(4L));
+        assertThat(slowest.getJSONObject(1).getString("name"), is("fast"));
+        assertThat(json.getInt("countDescriptors"), is(0));
+        assertThat(metrics.toString().startsWith("phases: render plugins "), is(true));
+    }
+}
@@ -0,0 +1,442 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import net.java.sezpoz.impl.SerAnnotatedElement;
+
+/**
+ * Writes synthetic plugin archives into the {@code plugins} folder of a home directory, to find and document steps
+ * offline, at any number of plugins.
+ * <p>
+ * Each plugin has {@code steps} steps, with attributes, an enum, a list, an attribute of a class without
+ * {@code @DataBoundConstructor}, a nested object of depth {@code depth} and a nested choice between {@code choices}
+ * implementations. With metasteps, each plugin also contributes an action to
+ * the {@code syntheticAction} metastep of the {@code synthetic-api} plugin. The sources are compiled with the
+ * compiler of the JDK against the classpath of the tests, the extension index is written as the annotation
+ * processor would.
+ */
+final class SyntheticPlugins {
+    /** Plugin of the metastep, which the other plugins depend on when they have metasteps. */
+    static final String API = "synthetic-api";
+    /** File listing no deprecated plugins, to pass to {@code -deprecationsCache} instead of the update center. */
+    static final String DEPRECATIONS = "deprecated-plugins.txt";
+
+    private final int steps;
+    private final int depth;
+    private final int choices;
+    private final boolean metaSteps;
+    private final boolean help;
+
+    /**
+     * @param steps steps of each plugin
+     * @param depth depth of the nested object of each step, {@code 0} for none
+     * @param choices implementations of the nested choice of each step, {@code 0} for none
+     * @param metaSteps whether each plugin contributes an action to the metastep of {@link #API}
+     * @param help whether the classes and their attributes have help resources
+     */
+    SyntheticPlugins(int steps, int depth, int choices, boolean metaSteps, boolean help) {
+        this.steps = steps;
+        this.depth = depth;
+        this.choices = choices;
+        this.metaSteps = metaSteps;
+        this.help = help;
+    }
+
+    static String name(int plugin) {
+        return "synthetic-%04d".formatted(plugin);
+    }
+
+    /**
+     * @return the symbol of a step, unique to its plugin
+     */
+    static String symbol(int plugin, int step) {
+        return "p%04dstep%d".formatted(plugin, step);
+    }
+
+    /**
+     * Writes the archives of plugins {@code 0} to {@code plugins - 1}, and of {@link #API} with metasteps.
+     *
+     * @return the short names of the plugins written
+     */
+    List<String> write(Path homeDir, int plugins) throws IOException {
+        Path work = homeDir.resolve("synthetic");
+        Path sources = work.resolve("sources");
+        Path classes = work.resolve("classes");
+        Path archives = homeDir.resolve("plugins");
+        Files.createDirectories(archives);
+        Files.createDirectories(classes);
+
+        List<String> names = new ArrayList<>();
+        List<Plugin> all = new ArrayList<>();
+        if (metaSteps) {
+            all.add(api());
+        }
+        for (int i = 0; i < plugins; i++) {
+            all.add(plugin(i));
+        }
+        List<String> files = new ArrayList<>();
+        for (Plugin plugin : all) {
+            for (Source source : plugin.sources) {
+                Path file = sources.resolve(plugin.pkg.replace('.', '/')).resolve(source.name + ".java");
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, source.code, StandardCharsets.UTF_8);
+                files.add(file.toString());
+            }
+        }
+        compile(files, classes);
+        for (Plugin plugin : all) {
+            plugin.write(classes, archives);
+            names.add(plugin.name);
+        }
+        Files.write(homeDir.resolve(DEPRECATIONS), List.of(), StandardCharsets.UTF_8);
+        return names;
+    }
+
+    private static void compile(List<String> files, Path classes) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("Cannot compile the synthetic plugins without the compiler of a JDK");
+        }
+        List<String> args = new ArrayList<>(List.of(
+                "-proc:none",
+                "-parameters",
+                "-nowarn",
+                "-encoding",
+                "UTF-8",
+                "-classpath",
+                System.getProperty("java.class.path"),
+                "-d",
+                classes.toString()));
+        args.addAll(files);
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        if (compiler.run(null, null, errors, args.toArray(new String[0])) != 0) {
+            throw new IOException("Cannot compile the synthetic plugins:\n" + errors.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A source file of a plugin.
+     */
+    private record Source(String name, String code) {}
+
+    /**
+     * A plugin, its sources and what it needs in its archive besides classes.
+     */
+    private static final class Plugin {
+        final String name;
+        final String pkg;
+        final String dependencies;
+        final List<Source> sources = new ArrayList<>();
+        /** Extensions to index, by binary class name. */
+        final List<String> extensions = new ArrayList<>();
+        /** Help resources, by path relative to the root of the classes. */
+        final TreeMap<String, String> resources = new TreeMap<>();
+
+        Plugin(String name, String pkg, String dependencies) {
+            this.name = name;
+            this.pkg = pkg;
+            this.dependencies = dependencies;
+        }
+
+        void add(String className, String code, boolean extension) {
+            sources.add(new Source(className, "package " + pkg + ";\n\n" + code));
+            if (extension) {
+                extensions.add(pkg + "." + className + "$DescriptorImpl");
+            }
+        }
+
+        void help(String className, String attribute, String html) {
+            String file = attribute == null ? "help.html" : "help-" + attribute + ".html";
+            resources.put(pkg.replace('.', '/') + "/" + className + "/" + file, html);
+        }
+
+        /**
+         * Writes the archive of the plugin, with its classes, extension index and help in a library.
+         */
+        void write(Path classes, Path archives) throws IOException {
+            Manifest manifest = new Manifest();
+            Attributes attributes = manifest.getMainAttributes();
+            attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            attributes.putValue("Short-Name", name);
+            attributes.putValue("Long-Name", "Synthetic plugin " + name);
+            attributes.putValue("Plugin-Version", "1.0");
+            if (dependencies != null) {
+                attributes.putValue("Plugin-Dependencies", dependencies);
+            }
+            ByteArrayOutputStream jar = new ByteArrayOutputStream();
+            try (ZipOutputStream lib = new ZipOutputStream(jar)) {
+                lib.putNextEntry(new ZipEntry("META-INF/annotations/hudson.Extension"));
+                ObjectOutputStream index = new ObjectOutputStream(lib);
+                for (String extension : extensions) {
+                    index.writeObject(new SerAnnotatedElement(extension, null, false, new TreeMap<>()));
+                }
+                index.writeObject(null);
+                index.flush();
+                Path dir = classes.resolve(pkg.replace('.', '/'));
+                try (Stream<Path> files = Files.walk(dir)) {
+                    for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        lib.putNextEntry(new ZipEntry(classes.relativize(file).toString().replace('\\', '/')));
+                        Files.copy(file, lib);
+                    }
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                for (Map.Entry<String, String> resource : resources.entrySet()) {
+                    lib.putNextEntry(new ZipEntry(resource.getKey()));
+                    lib.write(resource.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            try (JarOutputStream hpi =
+                    new JarOutputStream(Files.newOutputStream(archives.resolve(name + ".hpi")), manifest)) {
+                hpi.putNextEntry(new ZipEntry("WEB-INF/lib/" + name + ".jar"));
+                hpi.write(jar.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * @return help with the markup found in plugins
+     */
+    private static String helpOf(String what) {
+        return "<div>\n"
+                + "  <p>Help of <code>" + what + "</code>, see <a href=\"https://www.jenkins.io/doc/\">this</a>.</p>\n"
+                + "  <ul>\n"
+                + "    <li>First <strong>case</strong></li>\n"
+                + "    <li>Second case</li>\n"
+                + "  </ul>\n"
+                + "</div>\n";
+    }
+
+    private Plugin api() {
+        Plugin plugin = new Plugin(API, "synthetic.api", null);
+        plugin.add(
+                "Action",
+                "import hudson.model.AbstractDescribableImpl;\n\n"
+                        + "public abstract class Action extends AbstractDescribableImpl<Action> {}\n",
+                false);
+        plugin.add(
+                "ActionStep",
+                "import hudson.Extension;\n"
+                        + "import java.util.Set;\n"
+                        + "import org.jenkinsci.plugins.workflow.steps.Step;\n"
+                        + "import org.jenkinsci.plugins.workflow.steps.StepContext;\n"
+                        + "import org.jenkinsci.plugins.workflow.steps.StepDescriptor;\n"
+                        + "import org.jenkinsci.plugins.workflow.steps.StepExecution;\n"
+                        + "import org.kohsuke.stapler.DataBoundConstructor;\n\n"
+                        + "public class ActionStep extends Step {\n"
+                        + "    private final Action delegate;\n\n"
+                        + "    @DataBoundConstructor\n"
+                        + "    public ActionStep(Action delegate) {\n"
+                        + "        this.delegate = delegate;\n"
+                        + "    }\n\n"
+                        + "    public Action getDelegate() {\n"
+                        + "        return delegate;\n"
+                        + "    }\n\n"
+                        + start()
+                        + descriptor("syntheticAction", "Run a synthetic action", true)
+                        + "}\n",
+                true);
+        if (help) {
+            plugin.help("ActionStep", null, helpOf("syntheticAction"));
+        }
+        return plugin;
+    }
+
+    private Plugin plugin(int index) {
+        String name = name(index);
+        String prefix = "p%04d".formatted(index);
+        Plugin plugin = new Plugin(name, "synthetic." + prefix, metaSteps ? API + ":1.0" : null);
+        plugin.add("Mode", "public enum Mode {\n    FAST,\n    SLOW,\n    AUTO\n}\n", false);
+        // not describable, documented by its type only
+        plugin.add(
+                "Unbound",
+                "public class Unbound {\n"
+                        + "    public Unbound(String value) {}\n"
+                        + "}\n",
+                false);
+
+        if (choices > 0) {
+            plugin.add(
+                    "Choice",
+                    "import hudson.model.AbstractDescribableImpl;\n\n"
+                            + "public abstract class Choice extends AbstractDescribableImpl<Choice> {}\n",
+                    false);
+            for (int i = 0; i < choices; i++) {
+                describable(
+                        plugin, "Choice" + i, "Choice", prefix + "choice" + i, List.of(new Attribute("int", "weight")));
+            }
+        }
+        for (int d = 1; d <= depth; d++) {
+            List<Attribute> attributes = new ArrayList<>();
+            attributes.add(new Attribute("String", "value"));
+            if (d > 1) {
+                attributes.add(new Attribute("Level" + (d - 1), "nested"));
+            }
+            describable(plugin, "Level" + d, null, null, attributes);
+        }
+        if (metaSteps) {
+            describable(
+                    plugin,
+                    "PluginAction",
+                    "synthetic.api.Action",
+                    prefix + "action",
+                    List.of(new Attribute("String", "target")));
+        }
+
+        for (int i = 0; i < steps; i++) {
+            String className = "Step" + i;
+            List<Attribute> attributes = new ArrayList<>(List.of(
+                    new Attribute("int", "count"),
+                    new Attribute("boolean", "quiet"),
+                    new Attribute("Mode", "mode"),
+                    new Attribute("java.util.List<String>", "labels"),
+                    new Attribute("Unbound", "unbound")));
+            if (depth > 0) {
+                attributes.add(new Attribute("Level" + depth, "options"));
+            }
+            if (choices > 0) {
+                attributes.add(new Attribute("Choice", "choice"));
+            }
+            plugin.add(
+                    className,
+                    "import hudson.Extension;\n"
+                            + "import java.util.Set;\n"
+                            + "import org.jenkinsci.plugins.workflow.steps.Step;\n"
+                            + "import org.jenkinsci.plugins.workflow.steps.StepContext;\n"
+                            + "import org.jenkinsci.plugins.workflow.steps.StepDescriptor;\n"
+                            + "import org.jenkinsci.plugins.workflow.steps.StepExecution;\n"
+                            + "import org.kohsuke.stapler.DataBoundConstructor;\n"
+                            + "import org.kohsuke.stapler.DataBoundSetter;\n\n"
+                            + "public class " + className + " extends Step {\n"
+                            + properties(className, attributes)
+                            + start()
+                            + descriptor(symbol(index, i), "Synthetic step " + i + " of " + name, false)
+                            + "}\n",
+                    true);
+            help(plugin, className, attributes);
+        }
+        return plugin;
+    }
+
+    /**
+     * An attribute set by a setter, after the {@code name} set by the constructor.
+     */
+    private record Attribute(String type, String name) {}
+
+    /**
+     * Adds a describable class with a descriptor, which implements {@code base} with a symbol if given.
+     */
+    private void describable(Plugin plugin, String className, String base, String symbol, List<Attribute> attributes) {
+        String type = base == null ? className : base;
+        plugin.add(
+                className,
+                "import hudson.Extension;\n"
+                        + "import hudson.model.Descriptor;\n"
+                        + "import org.jenkinsci.Symbol;\n"
+                        + "import org.kohsuke.stapler.DataBoundConstructor;\n"
+                        + "import org.kohsuke.stapler.DataBoundSetter;\n\n"
+                        + "public class " + className + " extends "
+                        + (base == null ? "hudson.model.AbstractDescribableImpl<" + className + ">" : base) + " {\n"
+                        + properties(className, attributes)
+                        + "    @Extension\n"
+                        + (symbol == null ? "" : "    @Symbol(\"" + symbol + "\")\n")
+                        + "    public static class DescriptorImpl extends Descriptor<" + type + "> {}\n"
+                        + "}\n",
+                true);
+        help(plugin, className, attributes);
+    }
+
+    private void help(Plugin plugin, String className, List<Attribute> attributes) {
+        if (!help) {
+            return;
+        }
+        plugin.help(className, null, helpOf(className));
+        plugin.help(className, "name", helpOf(className + ".name"));
+        for (Attribute attribute : attributes) {
+            plugin.help(className, attribute.name(), helpOf(className + "." + attribute.name()));
+        }
+    }
+
+    /**
+     * @return a required {@code name} and the attributes, with their accessors
+     */
+    private static String properties(String className, List<Attribute> attributes) {
+        StringBuilder code = new StringBuilder("    private final String name;\n");
+        for (Attribute attribute : attributes) {
+            code.append("    private ").append(attribute.type()).append(' ').append(attribute.name()).append(";\n");
+        }
+        code.append("\n    @DataBoundConstructor\n    public ")
+                .append(className)
+                .append("(String name) {\n        this.name = name;\n    }\n\n")
+                .append("    public String getName() {\n        return name;\n    }\n");
+        for (Attribute attribute : attributes) {
+            String suffix = Character.toUpperCase(attribute.name().charAt(0)) + attribute.name().substring(1);
+            code.append("\n    @DataBoundSetter\n    public void set")
+                    .append(suffix)
+                    .append('(')
+                    .append(attribute.type())
+                    .append(' ')
+                    .append(attribute.name())
+                    .append(") {\n        this.")
+                    .append(attribute.name())
+                    .append(" = ")
+                    .append(attribute.name())
+                    .append(";\n    }\n\n    public ")
+                    .append(attribute.type())
+                    .append(" get")
+                    .append(suffix)
+                    .append("() {\n        return ")
+                    .append(attribute.name())
+                    .append(";\n    }\n");
+        }
+        return code.append('\n').toString();
+    }
+
+    private static String start() {
+        return "    @Override\n"
+                + "    public StepExecution start(StepContext context) {\n"
+                + "        throw new UnsupportedOperationException();\n"
+                + "    }\n\n";
+    }
+
+    private static String descriptor(String functionName, String displayName, boolean metaStep) {
+        return "    @Extension\n"
+                + "    public static class DescriptorImpl extends StepDescriptor {\n"
+                + "        @Override\n"
+                + "        public String getFunctionName() {\n"
+                + "            return \"" + functionName + "\";\n"
+                + "        }\n\n"
+                + "        @Override\n"
+                + "        public String getDisplayName() {\n"
+                + "            return \"" + displayName + "\";\n"
+                + "        }\n\n"
+                + (metaStep
+                        ? "        @Override\n"
+                                + "        public boolean isMetaStep() {\n"
+                                + "            return true;\n"
+                                + "        }\n\n"
+                        : "")
+                + "        @Override\n"
+                + "        public Set<? extends Class<?>> getRequiredContext() {\n"
+                + "            return Set.of();\n"
+                + "        }\n"
+                + "    }\n";
+    }
+}
@@ -0,0 +1,46 @@
+package org.jenkinsci.pipeline_steps_doc_generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SyntheticPluginsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void pagesOfSyntheticPluginsAreGeneratedOffline() throws Exception {
+        Path home = tmp.getRoot().toPath();
+        List<String> plugins = new SyntheticPlugins(2, 2, 3, true, true).write(home, 10);
+        assertThat(plugins.size(), is(11));
+        assertThat(PluginPrefilter.scan(home.resolve("plugins").toFile()).select(), is(new TreeSet<>(plugins)));
+
+        PipelineStepExtractor pse = new PipelineStepExtractor();
+        pse.homeDir = home.toString();
+        pse.asciiDest = home.resolve("allAscii").toString();
+        pse.deprecationsCache = home.resolve(SyntheticPlugins.DEPRECATIONS).toString();
+        Map<String, Map<String, List<QuasiDescriptor>>> steps = pse.findSteps();
+        assertThat(new TreeSet<>(steps.keySet()), is(new TreeSet<>(plugins)));
+        pse.generateAscii(steps, pse.pluginManager);
+
+        Map<String, String> pages = new TreeMap<>();
+        OutputValidator.read(home.resolve("allAscii"), OutputValidator.ASCII, pages);
+        assertThat(OutputValidator.check(pages, 2), is(List.of()));
+        String page = pages.get(OutputValidator.ASCII + SyntheticPlugins.name(3) + ".adoc");
+        assertThat(page, containsString(SyntheticPlugins.symbol(3, 1)));
+        // contributed to the metastep of the API plugin
+        assertThat(page, containsString("p0003action"));
+        String all = String.join("\n", pages.values());
+        assertThat(all, containsString("p0003choice2"));
+        assertThat(all, containsString("Help of <code>Level1.value</code>"));
+    }
+}
@@ -6,19 +6,18 @@ import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import org.jenkinsci.plugins.structs.describable.DescribableModel;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ToAsciidocTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
 
     @Test
     public void testDescribeType() {
@@ -35,34 +34,20 @@ public class ToAsciidocTest {
 
     @Test
     public void getHelpWithNoStaplerConstructor() throws IOException {
+        Path home = tmp.getRoot().toPath();
+        new SyntheticPlugins(1, 0, 0, false, true).write(home, 1);
         PipelineStepExtractor pes = new PipelineStepExtractor();
-        Path plugins = setupPluginDir(pes);
-        downloadCpsPlugin(plugins);
+        pes.homeDir = home.toString();
+        pes.deprecationsCache = home.resolve(SyntheticPlugins.DEPRECATIONS).toString();
         Map<String, Map<String, List<QuasiDescriptor>>> steps = pes.findSteps();
-        QuasiDescriptor parallel = steps.get("workflow-cps").get("Steps").stream()
-                .filter(desc -> desc.getSymbol().equals("parallel"))
+        QuasiDescriptor step = steps.get(SyntheticPlugins.name(0)).get("Steps").stream()
+                .filter(desc -> desc.getSymbol().equals(SyntheticPlugins.symbol(0, 0)))
                 .findFirst()
                 .orElseThrow();
-        String desc = ToAsciiDoc.generateStepHelp(parallel);
-        assertThat(desc, containsString("parallel firstBranch"));
+        String desc = ToAsciiDoc.generateStepHelp(step);
+        assertThat(desc, containsString("Help of <code>Step0</code>"));
+        // the attribute whose class has no @DataBoundConstructor is documented by its type
+        assertThat(desc, containsString("<code>synthetic.p0000.Unbound</code>"));
         assertThat(desc, not(containsString("Exception")));
     }
-
-    private Path setupPluginDir(PipelineStepExtractor pes) throws IOException {
-        Path tempDir = Files.createTempDirectory("plugins");
-        pes.homeDir = tempDir.toFile().getAbsolutePath();
-        Path plugins = tempDir.resolve("plugins");
-        Files.createDirectory(plugins);
-        return plugins;
-    }
-
-    private void downloadCpsPlugin(Path plugins) throws IOException {
-        URL website = new URL(
-                "https://updates.jenkins.io/download/plugins/workflow-cps/3697.vb_470e454c232/workflow-cps.hpi");
-        ReadableByteChannel rbc = Channels.newChannel(website.openStream());
-        try (FileOutputStream fos =
-                new FileOutputStream(plugins.resolve("workflow-cps.hpi").toFile())) {
-            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-        }
-    }
 }
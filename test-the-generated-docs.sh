@@ -6,19 +6,42 @@
 # Script exits with non-zero exit code if any test fails
 
 file=allAscii/workflow-scm-step.adoc
+archive=allAscii.zip
 
 echo "======== Check workflow scm step file size - $file"
 
-if [ ! -f $file ]; then
+if [ -f $file ]; then
+        # This is Linux specific
+        SCM_STEP_SIZE=$(stat -c%s $file)
+elif [ -f $archive ] && unzip -l $archive workflow-scm-step.adoc > /dev/null 2>&1; then
+        # Pages written by the generator straight into the archive, with -zip
+        SCM_STEP_SIZE=$(unzip -p $archive workflow-scm-step.adoc | wc -c)
+else
         echo "$file not found, cannot test"
         exit 125 # Exit code 125 tells git bisect to skip this commit
 fi
 
-# This is Linux specific
-SCM_STEP_SIZE=$(stat -c%s $file)
 if (( SCM_STEP_SIZE < 75000 )); then
         echo "$file size is ${SCM_STEP_SIZE}, expected at least 75000 bytes"
         exit 1
 fi
 
+echo "======== Check the generated pages, and compare them to baseline.json"
+
+jar=$(ls target/*-bin/pipeline-steps-doc-generator*.jar 2> /dev/null | head -1)
+if [ -z "$jar" ]; then
+        echo "Generator jar not found, cannot check the pages"
+        exit 125
+fi
+
+# Writes baseline.json for the next run to compare to
+java -cp "$jar" org.jenkinsci.pipeline_steps_doc_generator.OutputValidator \
+        -metrics metrics.json -baseline baseline.json -baselineDest baseline.json
+status=$?
+if (( status == 1 )); then
+        exit 1
+elif (( status != 0 )); then
+        exit 125
+fi
+
 exit 0